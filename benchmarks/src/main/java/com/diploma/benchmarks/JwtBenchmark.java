@@ -0,0 +1,47 @@
+package com.diploma.benchmarks;
+
+import com.diploma.config.ApplicationProperties;
+import com.diploma.security.jwt.TokenProvider;
+import com.diploma.security.jwt.VerifiedToken;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token signing as done at login and token verification as done by the authorization filter,
+ * with and without the verified-token cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+    private TokenProvider tokenProvider;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        tokenProvider = new TokenProvider(new ApplicationProperties(), new SimpleMeterRegistry());
+        token = tokenProvider.createToken("john@gmail.com", 42L, "ROLE_USER", "/login", 120 * 60 * 1000);
+    }
+
+    @Benchmark
+    public String sign() {
+        return tokenProvider.createToken("john@gmail.com", 42L, "ROLE_USER", "/login", 120 * 60 * 1000);
+    }
+
+    @Benchmark
+    public DecodedJWT verifyUncached() {
+        return tokenProvider.decode(token);
+    }
+
+    @Benchmark
+    public VerifiedToken verifyCached() {
+        return tokenProvider.verify(token);
+    }
+}
@@ -0,0 +1,78 @@
+package com.diploma.benchmarks;
+
+import com.diploma.domain.Record;
+import com.diploma.domain.User;
+import com.diploma.domain.enumeration.Gender;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the listing responses, configured like the Spring Boot object mapper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PageSerializationBenchmark {
+
+    @Param({"20", "200"})
+    private int pageSize;
+
+    private ObjectMapper objectMapper;
+    private Page<Record> records;
+    private Page<User> users;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        LocalDate today = LocalDate.now();
+        List<Record> recordList = new ArrayList<>(pageSize);
+        List<User> userList = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            recordList.add(Record.builder()
+                    .id((long) i)
+                    .userId(1L)
+                    .heartRate(60 + i % 40)
+                    .sugarLevel(4.0 + (i % 30) / 10.0)
+                    .dateCreated(today.minusDays(i))
+                    .dateUpdated(today.minusDays(i))
+                    .build());
+            userList.add(User.builder()
+                    .id((long) i)
+                    .name("John")
+                    .surname("Smith")
+                    .email("john" + i + "@gmail.com")
+                    .password("$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z3K9X1Xk1b1y1s1oP5E5Q5xK")
+                    .birthDate(today.minusYears(20 + i % 50))
+                    .gender(Gender.values()[i % 3])
+                    .weight(60.0 + i % 60)
+                    .build());
+        }
+        records = new PageImpl<>(recordList, PageRequest.of(0, pageSize), 10_000);
+        users = new PageImpl<>(userList, PageRequest.of(0, pageSize), 10_000);
+    }
+
+    @Benchmark
+    public byte[] recordPage() throws Exception {
+        return objectMapper.writeValueAsBytes(records);
+    }
+
+    @Benchmark
+    public byte[] userPage() throws Exception {
+        return objectMapper.writeValueAsBytes(users);
+    }
+}
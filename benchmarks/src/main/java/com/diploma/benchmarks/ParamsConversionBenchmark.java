@@ -0,0 +1,34 @@
+package com.diploma.benchmarks;
+
+import com.diploma.service.RecordsParams;
+import com.diploma.service.SearchParameters;
+import com.diploma.service.dto.RecordsParamsDTO;
+import com.diploma.service.dto.SearchParametersDTO;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of the listing request bodies into service parameters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParamsConversionBenchmark {
+
+    private final SearchParametersDTO searchParametersDTO = new SearchParametersDTO("Jo", "Sm", 2, 50);
+    private final RecordsParamsDTO recordsParamsDTO = new RecordsParamsDTO(null, 2, 50, null, null);
+
+    @Benchmark
+    public SearchParameters searchParameters() {
+        return searchParametersDTO.convertSearchParamsRequestToSearchParams();
+    }
+
+    @Benchmark
+    public RecordsParams recordsParams() {
+        return recordsParamsDTO.convertToRecordsParams();
+    }
+}
@@ -0,0 +1,158 @@
+package com.diploma.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Percentiles of a running API, read from its sketches, against the exact {@code percentile_cont} of the database,
+ * for both answers and latency.
+ * <p>
+ * Run, with the access token of an analyst and a JDBC URL of the database the API uses:
+ * <pre>
+ *     java -cp benchmarks/target/benchmarks.jar com.diploma.benchmarks.PercentileComparison \
+ *         "jdbc:postgresql://localhost:5432/health_tracker_dev?currentSchema=health_tracker" postgres postgres \
+ *         http://localhost:8081 $ACCESS_TOKEN 2024-01-01 2024-12-31 20 [userId,userId,...]
+ * </pre>
+ * Arguments: JDBC URL, database user and password, API base URL, bearer token, first and last day, number of
+ * measured runs, and optionally the users, all users by default. The SQL runs over the range returned by the API,
+ * which is widened to whole sketch buckets. The sketches answer nearest-rank quantiles, which may differ from the
+ * interpolated {@code percentile_cont} by up to the gap between two neighbouring values, on top of their relative
+ * error.
+ */
+public class PercentileComparison {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.95, 0.99};
+    private static final String[] METRICS = {"heart_rate", "sugar_level"};
+    private static final String[] FIELDS = {"heartRate", "sugarLevel"};
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 8) {
+            System.err.println("Usage: PercentileComparison <jdbc url> <db user> <db password> <api url> <access token>"
+                    + " <from> <to> <runs> [user ids]");
+            System.exit(1);
+        }
+        String userIds = args.length > 8 ? args[8] : null;
+        int runs = Integer.parseInt(args[7]);
+        StringBuilder query = new StringBuilder(args[3]).append("/api/analytics/percentiles?from=").append(args[5])
+                .append("&to=").append(args[6])
+                .append("&quantiles=").append(URLEncoder.encode(join(QUANTILES), StandardCharsets.UTF_8));
+        if (userIds != null) {
+            query.append("&userIds=").append(URLEncoder.encode(userIds, StandardCharsets.UTF_8));
+        }
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(query.toString()))
+                .header("Authorization", "Bearer " + args[4])
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+        ObjectMapper mapper = new ObjectMapper();
+
+        try (Connection connection = DriverManager.getConnection(args[0], args[1], args[2])) {
+            // warm-up, not measured; also gives the widened range for the SQL
+            JsonNode sketch = fetch(client, request, mapper);
+            LocalDate from = LocalDate.parse(sketch.get("from").asText());
+            LocalDate to = LocalDate.parse(sketch.get("to").asText());
+            Long[] users = userIds == null ? null
+                    : Arrays.stream(userIds.split(",")).map(String::trim).map(Long::valueOf).toArray(Long[]::new);
+            double[][] exact = exact(connection, from, to, users);
+
+            long[] sketchLatencies = new long[runs];
+            long[] sqlLatencies = new long[runs];
+            for (int run = 0; run < runs; run++) {
+                long start = System.nanoTime();
+                sketch = fetch(client, request, mapper);
+                sketchLatencies[run] = System.nanoTime() - start;
+                start = System.nanoTime();
+                exact = exact(connection, from, to, users);
+                sqlLatencies[run] = System.nanoTime() - start;
+            }
+
+            System.out.printf("range %s to %s, relative error bound %.4f%n", from, to, sketch.get("relativeError").asDouble());
+            for (int m = 0; m < METRICS.length; m++) {
+                System.out.printf("%s: %d values in sketches, %d in the database%n",
+                        METRICS[m], sketch.get(FIELDS[m] + "Count").asLong(), (long) exact[m][QUANTILES.length]);
+                for (int q = 0; q < QUANTILES.length; q++) {
+                    JsonNode value = sketch.get(FIELDS[m]).get(Double.toString(QUANTILES[q]));
+                    double approximate = value == null || value.isNull() ? Double.NaN : value.asDouble();
+                    System.out.printf("  p%s: sketch %.2f, percentile_cont %.2f, relative difference %.4f%n",
+                            Double.toString(QUANTILES[q] * 100).replaceAll("\\.0$", ""), approximate, exact[m][q],
+                            Math.abs(approximate - exact[m][q]) / Math.abs(exact[m][q]));
+                }
+            }
+            System.out.printf("latency ms, sketches: p50 %.1f, max %.1f; percentile_cont: p50 %.1f, max %.1f%n",
+                    median(sketchLatencies), max(sketchLatencies), median(sqlLatencies), max(sqlLatencies));
+        }
+        System.exit(0);
+    }
+
+    private static JsonNode fetch(HttpClient client, HttpRequest request, ObjectMapper mapper) throws Exception {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("API answered " + response.statusCode() + ": " + response.body());
+        }
+        return mapper.readTree(response.body());
+    }
+
+    /**
+     * @return per metric, the quantiles followed by the number of values.
+     */
+    private static double[][] exact(Connection connection, LocalDate from, LocalDate to, Long[] users) throws Exception {
+        double[][] result = new double[METRICS.length][];
+        for (int m = 0; m < METRICS.length; m++) {
+            String sql = "SELECT percentile_cont(?) WITHIN GROUP (ORDER BY " + METRICS[m] + "), count(" + METRICS[m] + ")"
+                    + " FROM record WHERE date_created BETWEEN ? AND ?"
+                    + (users == null ? "" : " AND user_id = ANY(?)");
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                Array quantiles = connection.createArrayOf("float8", Arrays.stream(QUANTILES).boxed().toArray());
+                statement.setArray(1, quantiles);
+                statement.setDate(2, Date.valueOf(from));
+                statement.setDate(3, Date.valueOf(to));
+                if (users != null) {
+                    statement.setArray(4, connection.createArrayOf("bigint", users));
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    rs.next();
+                    double[] values = new double[QUANTILES.length + 1];
+                    Array array = rs.getArray(1);
+                    Object[] quantileValues = array == null ? new Object[QUANTILES.length] : (Object[]) array.getArray();
+                    for (int q = 0; q < QUANTILES.length; q++) {
+                        values[q] = quantileValues[q] == null ? Double.NaN : ((Number) quantileValues[q]).doubleValue();
+                    }
+                    values[QUANTILES.length] = rs.getLong(2);
+                    result[m] = values;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String join(double[] values) {
+        return String.join(",", Arrays.stream(values).mapToObj(Double::toString).toArray(String[]::new));
+    }
+
+    private static double median(long[] latencies) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        return sorted.length == 0 ? 0 : sorted[(sorted.length - 1) / 2] / 1e6;
+    }
+
+    private static double max(long[] latencies) {
+        return Arrays.stream(latencies).max().orElse(0) / 1e6;
+    }
+}
@@ -0,0 +1,61 @@
+package com.diploma.benchmarks;
+
+import com.diploma.domain.Record;
+import com.diploma.domain.User;
+import com.diploma.service.SearchParameters;
+import com.diploma.service.specification.UserSpecification;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Predicate building of the user search. Hibernate metadata is bootstrapped against an in-memory H2
+ * database; no query is executed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserSpecificationBenchmark {
+
+    private SessionFactory sessionFactory;
+    private CriteriaBuilder criteriaBuilder;
+    private UserSpecification specification;
+
+    @Setup
+    public void setUp() {
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(Record.class)
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:benchmarks")
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.hbm2ddl.auto", "none")
+                .setProperty("hibernate.xml_mapping_enabled", "false")
+                .buildSessionFactory();
+        criteriaBuilder = sessionFactory.getCriteriaBuilder();
+        specification = new UserSpecification(SearchParameters.builder()
+                .nameKeyword("Jo")
+                .surnameKeyword("Sm")
+                .build());
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public Predicate toPredicate() {
+        CriteriaQuery<User> query = criteriaBuilder.createQuery(User.class);
+        Root<User> root = query.from(User.class);
+        return specification.toPredicate(root, query, criteriaBuilder);
+    }
+}
@@ -1,14 +1,20 @@
 package com.diploma.config;
 
+import com.diploma.security.TimedBCryptPasswordEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
 @Configuration
+@EnableScheduling
+@EnableConfigurationProperties(ApplicationProperties.class)
 public class ApplicationConfig {
 
     @Bean
-    public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BCryptPasswordEncoder passwordEncoder(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        return new TimedBCryptPasswordEncoder(applicationProperties.getSecurity().getBcryptStrength(), meterRegistry);
     }
 }
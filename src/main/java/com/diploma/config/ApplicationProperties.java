@@ -0,0 +1,330 @@
+package com.diploma.config;
+
+import com.diploma.domain.enumeration.RollupBucket;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Properties specific to Health Tracker.
+ * <p>
+ * Properties are configured in the {@code application.yml} file under the {@code application} prefix.
+ */
+@Data
+@ConfigurationProperties(prefix = "application")
+public class ApplicationProperties {
+
+    private final Records records = new Records();
+    private final Users users = new Users();
+    private final Security security = new Security();
+    private final Sql sql = new Sql();
+    private final HibernateCache hibernateCache = new HibernateCache();
+    private final Threads threads = new Threads();
+    private final R2dbc r2dbc = new R2dbc();
+    private final Analytics analytics = new Analytics();
+
+    @Data
+    public static class Records {
+        private final Partitions partitions = new Partitions();
+        private final Ingestion ingestion = new Ingestion();
+        private final Anomalies anomalies = new Anomalies();
+        /**
+         * Maximum number of records accepted by a single {@code POST /api/records/batch} call.
+         */
+        private int batchMaxSize = 1000;
+        /**
+         * Number of rows fetched per round trip by the server-side cursor of record exports.
+         */
+        private int exportFetchSize = 1000;
+        /**
+         * Number of records written per transaction by imports.
+         */
+        private int importBatchSize = 500;
+        /**
+         * Maximum number of rejected lines detailed in an import report.
+         */
+        private int importMaxReportedErrors = 100;
+        /**
+         * Maximum number of characters of an imported line; longer lines are rejected without being buffered.
+         */
+        private int importMaxLineLength = 8192;
+        /**
+         * Number of months a record listing reads back from its last day when it gives no first day; the last
+         * day defaults to today.
+         */
+        private int listingDefaultMonths = 12;
+
+        @Data
+        public static class Partitions {
+            /**
+             * Whether the maintenance job manages the monthly partitions of the {@code record} table.
+             */
+            private boolean enabled = true;
+            /**
+             * Cron expression of the maintenance job.
+             */
+            private String cron = "0 0 3 * * *";
+            /**
+             * Number of monthly partitions kept ready after the current month.
+             */
+            private int monthsAhead = 3;
+            /**
+             * Number of past months kept in the table besides the current one; {@code 0} keeps everything.
+             */
+            private int retentionMonths = 0;
+            /**
+             * What happens to partitions older than the retention: {@code DETACH} keeps them as standalone
+             * tables, {@code DROP} deletes them.
+             */
+            private RetentionAction retentionAction = RetentionAction.DETACH;
+        }
+
+        public enum RetentionAction {
+            DETACH,
+            DROP
+        }
+
+        @Data
+        public static class Ingestion {
+            /**
+             * {@code SYNC} stores each record of {@code POST /api/records} before answering; {@code WRITE_BEHIND}
+             * appends it to a local write-ahead log, answers {@code 202 (Accepted)} and stores it in the background.
+             */
+            private IngestionMode mode = IngestionMode.SYNC;
+            /**
+             * Directory holding the segments and the checkpoint of the write-ahead log.
+             */
+            private String directory = "data/record-wal";
+            /**
+             * Size of one memory-mapped segment of the log, in bytes.
+             */
+            private long segmentSize = 64L * 1024 * 1024;
+            /**
+             * Maximum number of logged records stored per transaction by the drainer.
+             */
+            private int drainBatchSize = 1000;
+            /**
+             * Pause of the drainer when the log is empty or the database failed, in milliseconds.
+             */
+            private long drainInterval = 200;
+        }
+
+        public enum IngestionMode {
+            SYNC,
+            WRITE_BEHIND
+        }
+
+        @Data
+        public static class Anomalies {
+            /**
+             * Whether new readings are checked for anomalies.
+             */
+            private boolean enabled = true;
+            /**
+             * Maximum number of users whose statistics are kept, about 80 bytes each; readings of further users
+             * are not checked.
+             */
+            private int maxTrackedUsers = 100_000;
+            /**
+             * Number of latest alerts kept in memory, across all users.
+             */
+            private int maxAlerts = 10_000;
+            /**
+             * Number of readings of a user needed before its z-score and drift are evaluated.
+             */
+            private int minSamples = 20;
+            /**
+             * Distance from the mean of the user, in standard deviations, from which a reading is abnormal.
+             */
+            private double zScoreThreshold = 4.0;
+            /**
+             * Smoothing factor of the exponentially weighted moving average of each user.
+             */
+            private double ewmaAlpha = 0.1;
+            /**
+             * Distance of the EWMA from the mean of the user, in standard deviations, from which it drifts.
+             */
+            private double driftThreshold = 2.0;
+            private double heartRateMin = 40;
+            private double heartRateMax = 180;
+            private double sugarLevelMin = 3.0;
+            private double sugarLevelMax = 15.0;
+        }
+    }
+
+    @Data
+    public static class Users {
+        private final Purge purge = new Purge();
+
+        @Data
+        public static class Purge {
+            /**
+             * Maximum number of records of a deleted user deleted per transaction.
+             */
+            private int chunkSize = 5000;
+            /**
+             * Pause of the purge worker when no deleted user is left or the database failed, in milliseconds.
+             */
+            private long pollInterval = 1000;
+            /**
+             * Interval at which the ids of deleted users, whose access tokens are rejected, are reloaded to learn
+             * the deletes of other instances, in milliseconds.
+             */
+            private long deletedUsersRefreshInterval = 10000;
+        }
+    }
+
+    @Data
+    public static class Security {
+        private final Jwt jwt = new Jwt();
+        private final Login login = new Login();
+        /**
+         * BCrypt cost factor for new hashes; weaker stored hashes are upgraded on the next successful login.
+         */
+        private int bcryptStrength = 10;
+
+        @Data
+        public static class Jwt {
+            /**
+             * HMAC256 key used to sign and verify tokens.
+             */
+            private String secret = "secret";
+            /**
+             * Maximum number of verified tokens kept in memory; {@code 0} disables the cache.
+             */
+            private int cacheMaxSize = 10000;
+            /**
+             * Validity of the access tokens issued at login, the longest lived ones; deleted users are remembered
+             * this long to reject their tokens.
+             */
+            private Duration accessTokenValidity = Duration.ofMinutes(120);
+        }
+
+        @Data
+        public static class Login {
+            /**
+             * Number of threads verifying passwords; {@code 0} means one per available processor.
+             */
+            private int poolSize = 0;
+            /**
+             * Number of login attempts allowed to wait for a hashing thread before new ones are rejected.
+             */
+            private int queueCapacity = 64;
+            /**
+             * Maximum time a login attempt may wait for its password check, in milliseconds.
+             */
+            private long timeout = 10000;
+            /**
+             * Value of the {@code Retry-After} header sent with rejected login attempts, in seconds.
+             */
+            private int retryAfter = 1;
+        }
+    }
+
+    @Data
+    public static class Sql {
+        /**
+         * Whether responses carry the {@code X-Query-Count} and {@code Server-Timing} headers.
+         */
+        private boolean headersEnabled = true;
+        /**
+         * Number of executions of the same statement within one request above which a possible N+1 is logged;
+         * {@code 0} disables the check.
+         */
+        private int repeatedStatementThreshold = 10;
+    }
+
+    @Data
+    public static class HibernateCache {
+        /**
+         * Whether Hibernate uses the second-level and query caches.
+         */
+        private boolean enabled = true;
+        /**
+         * Limits of the cache regions, by region name; regions missing here are created with the default limits.
+         */
+        private Map<String, Region> regions = new LinkedHashMap<>();
+
+        @Data
+        public static class Region {
+            /**
+             * Maximum number of entries of the region.
+             */
+            private long maxSize = 10000;
+            /**
+             * Time after which an entry expires once written; unset keeps entries until they are evicted.
+             */
+            private Duration expireAfterWrite;
+        }
+    }
+
+    @Data
+    public static class Threads {
+        /**
+         * {@code PLATFORM} serves requests and async work on Tomcat's thread pool; {@code VIRTUAL} runs them on
+         * one virtual thread each.
+         */
+        private ThreadMode mode = ThreadMode.PLATFORM;
+    }
+
+    public enum ThreadMode {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    @Data
+    public static class R2dbc {
+        /**
+         * R2DBC URL of the database read by the {@code /api/v2} endpoints; the same database as the JDBC datasource.
+         */
+        private String url = "r2dbc:postgresql://localhost:5432/health_tracker_dev?currentSchema=health_tracker";
+        private String username;
+        private String password;
+        /**
+         * Number of connections opened when the pool is first used.
+         */
+        private int initialSize = 2;
+        /**
+         * Maximum number of connections of the pool.
+         */
+        private int maxSize = 20;
+    }
+
+    @Data
+    public static class Analytics {
+        /**
+         * Whether the records are kept in the in-memory columnar store that serves {@code /api/analytics}.
+         */
+        private boolean enabled = true;
+        /**
+         * Number of threads scanning the store for one query; {@code 0} uses every available processor.
+         */
+        private int parallelism = 0;
+        /**
+         * Time after which a running query is cancelled.
+         */
+        private Duration queryTimeout = Duration.ofSeconds(60);
+        /**
+         * Maximum number of cohort results cached; a result is only reused while no record or user has changed.
+         */
+        private int cohortCacheMaxSize = 100;
+        private Sketches sketches = new Sketches();
+
+        @Data
+        public static class Sketches {
+            /**
+             * Accuracy of the percentile sketches: quantiles are within {@code 2^-(precision-bits + 1)} of the true
+             * value, and a sketch holds up to {@code 2^precision-bits} buckets per power of two of the values.
+             */
+            private int precisionBits = 6;
+            /**
+             * Time bucket of the sketches kept per user: {@code day}, {@code week} or {@code month}. Percentile ranges
+             * are widened to whole buckets; smaller buckets are more precise in time and take more memory.
+             */
+            private RollupBucket bucket = RollupBucket.MONTH;
+        }
+    }
+}
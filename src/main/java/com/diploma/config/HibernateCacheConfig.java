@@ -0,0 +1,83 @@
+package com.diploma.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+
+/**
+ * Hibernate second-level and query caches, stored in Caffeine through JCache.
+ * <p>
+ * Every region is bounded by {@code application.hibernate-cache.regions}, and its hit, miss, put and eviction
+ * counts are published as {@code cache.*} meters tagged {@code cacheManager=hibernate}. Setting
+ * {@code application.hibernate-cache.enabled} to {@code false} turns both caches off.
+ */
+@Configuration
+public class HibernateCacheConfig {
+
+    public static final String USER_REGION = "user";
+    public static final String RECORD_REGION = "record";
+
+    private static final String METRICS_CACHE_MANAGER = "hibernate";
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "application.hibernate-cache", name = "enabled", matchIfMissing = true)
+    public CacheManager hibernateCacheManager(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), getClass().getClassLoader());
+
+        Map<String, ApplicationProperties.HibernateCache.Region> regions = new LinkedHashMap<>();
+        regions.put(USER_REGION, new ApplicationProperties.HibernateCache.Region());
+        regions.put(RECORD_REGION, new ApplicationProperties.HibernateCache.Region());
+        regions.put(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, new ApplicationProperties.HibernateCache.Region());
+        regions.put(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, new ApplicationProperties.HibernateCache.Region());
+        regions.putAll(applicationProperties.getHibernateCache().getRegions());
+
+        regions.forEach((name, region) -> {
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            configuration.setMaximumSize(OptionalLong.of(region.getMaxSize()));
+            if (region.getExpireAfterWrite() != null) {
+                configuration.setExpireAfterWrite(OptionalLong.of(region.getExpireAfterWrite().toNanos()));
+            }
+            configuration.setStatisticsEnabled(true);
+            Cache<Object, Object> cache = cacheManager.createCache(name, configuration);
+            JCacheMetrics.monitor(meterRegistry, cache, Tags.of("cacheManager", METRICS_CACHE_MANAGER));
+        });
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheCustomizer(ObjectProvider<CacheManager> hibernateCacheManager) {
+        return properties -> {
+            CacheManager cacheManager = hibernateCacheManager.getIfAvailable();
+            if (cacheManager == null) {
+                properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, false);
+                properties.put(AvailableSettings.USE_QUERY_CACHE, false);
+                return;
+            }
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.USE_QUERY_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, JCacheRegionFactory.class.getName());
+            properties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "create-warn");
+        };
+    }
+}
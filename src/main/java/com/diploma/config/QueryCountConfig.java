@@ -0,0 +1,29 @@
+package com.diploma.config;
+
+import com.diploma.repository.sql.CountingDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the application {@link DataSource} in a {@link CountingDataSource}, so that the per-request SQL statistics
+ * of {@link com.diploma.web.filter.QueryCountFilter} cover JPA and JDBC template statements alike.
+ */
+@Configuration
+public class QueryCountConfig {
+
+    @Bean
+    public static BeanPostProcessor countingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof CountingDataSource)) {
+                    return new CountingDataSource((DataSource) bean);
+                }
+                return bean;
+            }
+        };
+    }
+}
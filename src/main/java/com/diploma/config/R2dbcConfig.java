@@ -0,0 +1,67 @@
+package com.diploma.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.pool.PoolMetrics;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import javax.annotation.PreDestroy;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Non-blocking access to the database for the {@code /api/v2} read endpoints.
+ * <p>
+ * The R2DBC connection pool is deliberately not a bean: Spring Boot would take a {@code ConnectionFactory} bean
+ * as the application's database and back off from the JDBC datasource used by JPA. Only the
+ * {@link DatabaseClient} is exposed. Pool usage is published as {@code r2dbc.pool.*} gauges.
+ */
+@Configuration
+public class R2dbcConfig {
+
+    private static final String POOL_NAME = "records";
+
+    private ConnectionPool connectionPool;
+
+    @Bean
+    public DatabaseClient recordsDatabaseClient(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        ApplicationProperties.R2dbc r2dbc = applicationProperties.getR2dbc();
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(r2dbc.getUrl()).mutate();
+        if (r2dbc.getUsername() != null) {
+            options.option(ConnectionFactoryOptions.USER, r2dbc.getUsername());
+        }
+        if (r2dbc.getPassword() != null) {
+            options.option(ConnectionFactoryOptions.PASSWORD, r2dbc.getPassword());
+        }
+        connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options.build()))
+                .name(POOL_NAME)
+                .initialSize(r2dbc.getInitialSize())
+                .maxSize(r2dbc.getMaxSize())
+                .build());
+        connectionPool.getMetrics().ifPresent(metrics -> {
+            gauge(meterRegistry, "r2dbc.pool.acquired", metrics, PoolMetrics::acquiredSize);
+            gauge(meterRegistry, "r2dbc.pool.idle", metrics, PoolMetrics::idleSize);
+            gauge(meterRegistry, "r2dbc.pool.pending", metrics, PoolMetrics::pendingAcquireSize);
+            gauge(meterRegistry, "r2dbc.pool.max.allocated", metrics, PoolMetrics::getMaxAllocatedSize);
+        });
+        return DatabaseClient.create(connectionPool);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (connectionPool != null) {
+            connectionPool.dispose();
+        }
+    }
+
+    private static void gauge(MeterRegistry meterRegistry, String name, PoolMetrics metrics, ToDoubleFunction<PoolMetrics> value) {
+        Gauge.builder(name, metrics, value)
+                .tag("name", POOL_NAME)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,42 @@
+package com.diploma.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual-thread execution mode, enabled with {@code application.threads.mode=virtual}.
+ * <p>
+ * Tomcat hands every request to a new virtual thread instead of its bounded worker pool, and the
+ * {@code applicationTaskExecutor} used by asynchronous MVC responses (record exports) does the same, so
+ * requests blocked on JDBC no longer hold a platform thread each. Password hashing keeps its own bounded
+ * platform pool in {@link com.diploma.security.LoginExecutor}: it is CPU-bound.
+ * <p>
+ * Pinning of carrier threads can be checked by running with {@code -Djdk.tracePinnedThreads=short}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.threads", name = "mode", havingValue = "virtual")
+public class VirtualThreadsConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService virtualThreadExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("request-", 0).factory());
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer(ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor(ExecutorService virtualThreadExecutor) {
+        return new TaskExecutorAdapter(virtualThreadExecutor);
+    }
+}
@@ -1,15 +1,32 @@
 package com.diploma.domain;
 
+import com.diploma.config.HibernateCacheConfig;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Loader;
+import org.hibernate.annotations.SQLDelete;
 
 import javax.persistence.*;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.NotNull;
 import java.time.LocalDate;
 
 /**
  * A Record.
+ * <p>
+ * Loading and deleting by id look the creation day up in {@link RecordKey} first, so that the statement only
+ * reaches the partition holding the record.
  */
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.RECORD_REGION)
+@NamedQuery(name = Record.FIND_BY_KEY, query = "select r from Record r where r.id = :id " +
+        "and r.dateCreated = (select k.dateCreated from RecordKey k where k.id = :id)")
+@Loader(namedQuery = Record.FIND_BY_KEY)
+@SQLDelete(sql = "DELETE FROM record WHERE (id, date_created) = (SELECT id, date_created FROM record_key WHERE id = ?) " +
+        "AND version = ?")
 @Table(name = "record")
 @Data
 @EqualsAndHashCode(of = {"id"})
@@ -18,14 +35,22 @@ import java.time.LocalDate;
 @Builder
 public class Record {
     private static final long serialVersionUID = 1L;
+    public static final String FIND_BY_KEY = "Record.findByKey";
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "record_id_seq")
+    @SequenceGenerator(name = "record_id_seq", sequenceName = "record_id_seq", allocationSize = 50)
     private Long id;
 
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(name = "user_id", updatable = false)
+    private Long userId;
+
     @Column(name = "heart_rate")
     private Integer heartRate;
 
+    @DecimalMin(value = "-99.9")
+    @DecimalMax(value = "99.9")
     @Column(name = "sugar_level")
     private Double sugarLevel;
 
@@ -37,4 +62,8 @@ public class Record {
     @Column(name = "date_updated", nullable = false)
     private LocalDate dateUpdated;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
 }
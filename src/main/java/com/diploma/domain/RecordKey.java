@@ -0,0 +1,31 @@
+package com.diploma.domain;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDate;
+
+/**
+ * The creation day of a {@link Record}, by id.
+ * <p>
+ * Rows of the {@code record_key} table are kept by triggers on {@code record}; queries addressing a record by id
+ * look its day up here so that they are pruned to the partition holding it.
+ */
+@Entity
+@Immutable
+@Table(name = "record_key")
+@Data
+@NoArgsConstructor
+public class RecordKey {
+
+    @Id
+    private Long id;
+
+    @Column(name = "date_created", nullable = false)
+    private LocalDate dateCreated;
+}
@@ -0,0 +1,54 @@
+package com.diploma.domain;
+
+import com.diploma.domain.enumeration.RollupBucket;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Pre-aggregated heart rate and sugar level values of one user over one time bucket.
+ * <p>
+ * Rows of the {@code record_rollup} table are maintained by {@link com.diploma.service.RecordRollupService}
+ * whenever records are written, so statistics can be read without scanning the {@code record} table.
+ * Sugar level sums are kept in tenths to stay exact.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RecordRollup {
+
+    private Long userId;
+    private RollupBucket bucket;
+    private LocalDate bucketStart;
+
+    private long heartRateCount;
+    private long heartRateSum;
+    private Integer heartRateMin;
+    private Integer heartRateMax;
+
+    private long sugarLevelCount;
+    private long sugarLevelSumTenths;
+    private Double sugarLevelMin;
+    private Double sugarLevelMax;
+
+    public void add(Record record) {
+        Integer heartRate = record.getHeartRate();
+        if (heartRate != null) {
+            heartRateCount++;
+            heartRateSum += heartRate;
+            heartRateMin = heartRateMin == null ? heartRate : Math.min(heartRateMin, heartRate);
+            heartRateMax = heartRateMax == null ? heartRate : Math.max(heartRateMax, heartRate);
+        }
+        Double sugarLevel = record.getSugarLevel();
+        if (sugarLevel != null) {
+            sugarLevelCount++;
+            sugarLevelSumTenths += Math.round(sugarLevel * 10);
+            sugarLevelMin = sugarLevelMin == null ? sugarLevel : Math.min(sugarLevelMin, sugarLevel);
+            sugarLevelMax = sugarLevelMax == null ? sugarLevel : Math.max(sugarLevelMax, sugarLevel);
+        }
+    }
+}
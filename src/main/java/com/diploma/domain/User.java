@@ -1,19 +1,29 @@
 package com.diploma.domain;
 
+import com.diploma.config.HibernateCacheConfig;
 import com.diploma.domain.enumeration.Gender;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Where;
 
 import javax.persistence.*;
 import javax.validation.constraints.*;
 import java.io.Serializable;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.HashSet;
 import java.util.Set;
 
 /**
  * A User.
+ * <p>
+ * Deleted users stay hidden until {@link com.diploma.service.UserPurgeService} has purged their records.
  */
 @Entity
+@Where(clause = "deleted_at IS NULL")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.USER_REGION)
 @Table(name = "user_account")
 @Data
 @EqualsAndHashCode(of = {"id"})
@@ -64,8 +74,18 @@ public class User implements Serializable {
     @Builder.Default
     private String role = "ROLE_USER";
 
-    @OneToMany(cascade = CascadeType.ALL)
-    @JoinColumn(name = "user_id")
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @JsonIgnore
+    @Column(name = "deleted_at")
+    private Instant deletedAt;
+
+    @JsonIgnore
+    @ToString.Exclude
+    @OneToMany
+    @JoinColumn(name = "user_id", insertable = false, updatable = false)
     private Set<Record> records = new HashSet<>();
 
 }
@@ -0,0 +1,40 @@
+package com.diploma.domain;
+
+import com.diploma.domain.enumeration.PurgeStatus;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * The background purge of the records of one deleted user.
+ * <p>
+ * Rows of the {@code user_purge_job} table are written by {@link com.diploma.service.UserPurgeService}
+ * in the same transaction as each deleted chunk, so a purge resumes where it stopped after a restart.
+ * The total is counted when the purge starts and stays {@code null} until then.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserPurgeJob {
+
+    private Long userId;
+    private PurgeStatus status;
+    private Long recordsTotal;
+    private long recordsDeleted;
+    private Instant createdAt;
+    private Instant updatedAt;
+    private Instant completedAt;
+    /**
+     * The last record deleted, after which the next chunk starts; {@code null} before the first chunk.
+     */
+    @JsonIgnore
+    private LocalDate lastDateCreated;
+    @JsonIgnore
+    private Long lastRecordId;
+}
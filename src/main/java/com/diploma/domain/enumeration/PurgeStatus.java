@@ -0,0 +1,10 @@
+package com.diploma.domain.enumeration;
+
+/**
+ * The PurgeStatus enumeration.
+ */
+public enum PurgeStatus {
+    PENDING,
+    RUNNING,
+    DONE
+}
@@ -0,0 +1,56 @@
+package com.diploma.domain.enumeration;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * The RollupBucket enumeration: the time granularity of a pre-aggregated record bucket.
+ */
+public enum RollupBucket {
+    DAY {
+        @Override
+        public LocalDate start(LocalDate date) {
+            return date;
+        }
+
+        @Override
+        public LocalDate next(LocalDate start) {
+            return start.plusDays(1);
+        }
+    },
+    WEEK {
+        @Override
+        public LocalDate start(LocalDate date) {
+            return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        }
+
+        @Override
+        public LocalDate next(LocalDate start) {
+            return start.plusWeeks(1);
+        }
+    },
+    MONTH {
+        @Override
+        public LocalDate start(LocalDate date) {
+            return date.withDayOfMonth(1);
+        }
+
+        @Override
+        public LocalDate next(LocalDate start) {
+            return start.plusMonths(1);
+        }
+    };
+
+    /**
+     * @param date any day.
+     * @return the first day of the bucket containing {@code date}.
+     */
+    public abstract LocalDate start(LocalDate date);
+
+    /**
+     * @param start the first day of a bucket.
+     * @return the first day of the following bucket.
+     */
+    public abstract LocalDate next(LocalDate start);
+}
@@ -0,0 +1,116 @@
+package com.diploma.repository;
+
+import com.diploma.domain.Record;
+import com.diploma.domain.RecordRollup;
+import com.diploma.domain.enumeration.RollupBucket;
+import io.r2dbc.spi.Row;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Non-blocking R2DBC reads of the {@code record} and {@code record_rollup} tables.
+ * <p>
+ * Every record query is scoped to one owner and carries a range on {@code date_created}, like the JPA ones.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReactiveRecordRepository {
+
+    private static final String RECORD_COLUMNS = "id, user_id, heart_rate, sugar_level, date_created, date_updated, version";
+
+    private static final String FIRST_PAGE_SQL = "SELECT " + RECORD_COLUMNS + " FROM record " +
+            "WHERE user_id = :userId AND date_created >= :from AND date_created <= :to " +
+            "ORDER BY date_created, id LIMIT :limit";
+
+    private static final String PAGE_AFTER_SQL = "SELECT " + RECORD_COLUMNS + " FROM record " +
+            "WHERE user_id = :userId AND date_created >= :dateCreated AND date_created <= :to " +
+            "AND (date_created > :dateCreated OR id > :id) " +
+            "ORDER BY date_created, id LIMIT :limit";
+
+    private static final String FIND_BY_ID_SQL = "SELECT " + RECORD_COLUMNS + " FROM record " +
+            "WHERE id = :id AND user_id = :userId " +
+            "AND date_created = (SELECT date_created FROM record_key WHERE id = :id)";
+
+    private static final String FIND_ROLLUPS_SQL = "SELECT * FROM record_rollup " +
+            "WHERE user_id = :userId AND bucket = :bucket AND bucket_start >= :from AND bucket_start <= :to " +
+            "ORDER BY bucket_start";
+
+    private final DatabaseClient recordsDatabaseClient;
+
+    public Flux<Record> findFirstKeysetPage(Long userId, LocalDate from, LocalDate to, int limit) {
+        return recordsDatabaseClient.sql(FIRST_PAGE_SQL)
+                .bind("userId", userId)
+                .bind("from", from)
+                .bind("to", to)
+                .bind("limit", limit)
+                .map((row, metadata) -> mapRecord(row))
+                .all();
+    }
+
+    public Flux<Record> findKeysetPageAfter(Long userId, LocalDate dateCreated, Long id, LocalDate to, int limit) {
+        return recordsDatabaseClient.sql(PAGE_AFTER_SQL)
+                .bind("userId", userId)
+                .bind("dateCreated", dateCreated)
+                .bind("id", id)
+                .bind("to", to)
+                .bind("limit", limit)
+                .map((row, metadata) -> mapRecord(row))
+                .all();
+    }
+
+    public Mono<Record> findByIdAndUserId(Long id, Long userId) {
+        return recordsDatabaseClient.sql(FIND_BY_ID_SQL)
+                .bind("id", id)
+                .bind("userId", userId)
+                .map((row, metadata) -> mapRecord(row))
+                .one();
+    }
+
+    public Flux<RecordRollup> findRollups(Long userId, RollupBucket bucket, LocalDate from, LocalDate to) {
+        return recordsDatabaseClient.sql(FIND_ROLLUPS_SQL)
+                .bind("userId", userId)
+                .bind("bucket", bucket.name())
+                .bind("from", from)
+                .bind("to", to)
+                .map((row, metadata) -> mapRollup(row))
+                .all();
+    }
+
+    private static Record mapRecord(Row row) {
+        return Record.builder()
+                .id(row.get("id", Long.class))
+                .userId(row.get("user_id", Long.class))
+                .heartRate(row.get("heart_rate", Integer.class))
+                .sugarLevel(toDouble(row.get("sugar_level", BigDecimal.class)))
+                .dateCreated(row.get("date_created", LocalDate.class))
+                .dateUpdated(row.get("date_updated", LocalDate.class))
+                .version(row.get("version", Long.class))
+                .build();
+    }
+
+    private static RecordRollup mapRollup(Row row) {
+        return RecordRollup.builder()
+                .userId(row.get("user_id", Long.class))
+                .bucket(RollupBucket.valueOf(row.get("bucket", String.class)))
+                .bucketStart(row.get("bucket_start", LocalDate.class))
+                .heartRateCount(row.get("heart_rate_count", Long.class))
+                .heartRateSum(row.get("heart_rate_sum", Long.class))
+                .heartRateMin(row.get("heart_rate_min", Integer.class))
+                .heartRateMax(row.get("heart_rate_max", Integer.class))
+                .sugarLevelCount(row.get("sugar_level_count", Long.class))
+                .sugarLevelSumTenths(row.get("sugar_level_sum", BigDecimal.class).movePointRight(1).longValue())
+                .sugarLevelMin(toDouble(row.get("sugar_level_min", BigDecimal.class)))
+                .sugarLevelMax(toDouble(row.get("sugar_level_max", BigDecimal.class)))
+                .build();
+    }
+
+    private static Double toDouble(BigDecimal value) {
+        return value == null ? null : value.doubleValue();
+    }
+}
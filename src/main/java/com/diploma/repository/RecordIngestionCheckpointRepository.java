@@ -0,0 +1,46 @@
+package com.diploma.repository;
+
+import com.diploma.service.RecordWriteAheadLog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * JDBC repository for the {@code record_ingestion_checkpoint} table: the position of each write-ahead log up to
+ * which its records are stored.
+ */
+@Repository
+@RequiredArgsConstructor
+public class RecordIngestionCheckpointRepository {
+
+    private static final String LOCK_SQL = "SELECT segment, entry FROM record_ingestion_checkpoint " +
+            "WHERE log_id = :logId FOR UPDATE";
+
+    // a position never moves backwards
+    private static final String SAVE_SQL = "INSERT INTO record_ingestion_checkpoint AS c (log_id, segment, entry) " +
+            "VALUES (:logId, :segment, :entry) " +
+            "ON CONFLICT (log_id) DO UPDATE SET segment = EXCLUDED.segment, entry = EXCLUDED.entry, " +
+            "updated_at = CURRENT_TIMESTAMP WHERE (c.segment, c.entry) < (EXCLUDED.segment, EXCLUDED.entry)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Get the stored position of a log, locking it until the end of the transaction.
+     */
+    public Optional<RecordWriteAheadLog.Position> lock(String logId) {
+        return jdbcTemplate.query(LOCK_SQL, new MapSqlParameterSource("logId", logId),
+                        (rs, rowNum) -> new RecordWriteAheadLog.Position(rs.getLong("segment"), rs.getInt("entry")))
+                .stream()
+                .findFirst();
+    }
+
+    public void save(String logId, RecordWriteAheadLog.Position position) {
+        jdbcTemplate.update(SAVE_SQL, new MapSqlParameterSource()
+                .addValue("logId", logId)
+                .addValue("segment", position.getSegment())
+                .addValue("entry", position.getEntry()));
+    }
+}
@@ -0,0 +1,89 @@
+package com.diploma.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * JDBC repository managing the monthly partitions of the {@code record} table.
+ * <p>
+ * Monthly partitions are named {@code record_YYYY_MM}; other partitions, such as {@code record_default},
+ * are left alone.
+ */
+@Repository
+@RequiredArgsConstructor
+public class RecordPartitionRepository {
+
+    private static final String PREFIX = "record_";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final String USER_FOREIGN_KEY = "record_user_account_id_fk";
+
+    private static final String IS_PARTITIONED_SQL = "SELECT count(*) FROM pg_partitioned_table pt " +
+            "JOIN pg_class c ON c.oid = pt.partrelid " +
+            "WHERE c.relname = 'record' AND c.relnamespace = current_schema()::regnamespace";
+
+    private static final String PARTITIONS_SQL = "SELECT c.relname FROM pg_inherits i " +
+            "JOIN pg_class c ON c.oid = i.inhrelid " +
+            "JOIN pg_class p ON p.oid = i.inhparent " +
+            "WHERE p.relname = 'record' AND p.relnamespace = current_schema()::regnamespace";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean isPartitioned() {
+        Long count = jdbcTemplate.queryForObject(IS_PARTITIONED_SQL, Long.class);
+        return count != null && count > 0;
+    }
+
+    /**
+     * @return the months that currently have an attached partition.
+     */
+    public List<YearMonth> findMonths() {
+        return jdbcTemplate.queryForList(PARTITIONS_SQL, String.class).stream()
+                .map(RecordPartitionRepository::toMonth)
+                .flatMap(Optional::stream)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    public void create(YearMonth month) {
+        LocalDate start = month.atDay(1);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name(month) + " PARTITION OF record " +
+                "FOR VALUES FROM ('" + start + "') TO ('" + start.plusMonths(1) + "')");
+    }
+
+    /**
+     * Detach a partition and drop the user foreign key it keeps from {@code record}, so deleting a user whose
+     * rows sit in the detached table does not fail. The {@code record_key} rows of the month go with it.
+     */
+    @Transactional
+    public void detach(YearMonth month) {
+        LocalDate start = month.atDay(1);
+        jdbcTemplate.execute("ALTER TABLE record DETACH PARTITION " + name(month));
+        jdbcTemplate.execute("ALTER TABLE " + name(month) + " DROP CONSTRAINT IF EXISTS " + USER_FOREIGN_KEY);
+        jdbcTemplate.update("DELETE FROM record_key WHERE date_created >= ? AND date_created < ?", start, start.plusMonths(1));
+    }
+
+    public void drop(YearMonth month) {
+        jdbcTemplate.execute("DROP TABLE " + name(month));
+    }
+
+    public static String name(YearMonth month) {
+        return PREFIX + month.format(SUFFIX);
+    }
+
+    private static Optional<YearMonth> toMonth(String name) {
+        try {
+            return Optional.of(YearMonth.parse(name.substring(PREFIX.length()), SUFFIX));
+        } catch (RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+}
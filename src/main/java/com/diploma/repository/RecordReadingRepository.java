@@ -0,0 +1,52 @@
+package com.diploma.repository;
+
+import com.diploma.config.ApplicationProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+
+/**
+ * JDBC repository streaming the records of every user, to rebuild in-memory structures in one pass.
+ */
+@Repository
+public class RecordReadingRepository {
+
+    // the order of the (user_id, date_created, id) index, which order-dependent statistics such as an EWMA need
+    private static final String READINGS_SQL = "SELECT user_id, heart_rate, sugar_level FROM record " +
+            "WHERE user_id IS NOT NULL ORDER BY user_id, date_created, id";
+
+    private static final String ROWS_SQL = "SELECT id, user_id, date_created, heart_rate, sugar_level FROM record " +
+            "WHERE user_id IS NOT NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RecordReadingRepository(DataSource dataSource, ApplicationProperties applicationProperties) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(applicationProperties.getRecords().getExportFetchSize());
+    }
+
+    /**
+     * Pass every reading to a handler, through a forward-only server-side cursor; the read-only transaction is
+     * what lets the PostgreSQL driver use a cursor instead of buffering the whole table.
+     *
+     * @param handler receives rows of {@code user_id}, {@code heart_rate} and {@code sugar_level}.
+     */
+    @Transactional(readOnly = true)
+    public void streamAll(RowCallbackHandler handler) {
+        jdbcTemplate.query(READINGS_SQL, handler);
+    }
+
+    /**
+     * Pass every record to a handler, in no particular order, through a forward-only server-side cursor.
+     *
+     * @param handler receives rows of {@code id}, {@code user_id}, {@code date_created}, {@code heart_rate} and
+     *                {@code sugar_level}.
+     */
+    @Transactional(readOnly = true)
+    public void streamAllRows(RowCallbackHandler handler) {
+        jdbcTemplate.query(ROWS_SQL, handler);
+    }
+}
@@ -1,14 +1,58 @@
 package com.diploma.repository;
 
 import com.diploma.domain.Record;
+import com.diploma.service.dto.RecordVersionDTO;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 /**
- * Spring Data SQL repository for the User entity.
+ * Spring Data SQL repository for the Record entity.
  */
 @SuppressWarnings("unused")
 @Repository
 public interface RecordRepository extends JpaRepository<Record, Long>, JpaSpecificationExecutor<Record> {
+
+    @Query("select r from Record r where r.userId = :userId and r.dateCreated >= :from and r.dateCreated <= :to " +
+            "order by r.dateCreated asc, r.id asc")
+    List<Record> findFirstKeysetPage(@Param("userId") Long userId,
+                                     @Param("from") LocalDate from,
+                                     @Param("to") LocalDate to,
+                                     Pageable pageable);
+
+    @Query("select r from Record r where r.userId = :userId and r.dateCreated >= :dateCreated and r.dateCreated <= :to " +
+            "and (r.dateCreated > :dateCreated or r.id > :id) order by r.dateCreated asc, r.id asc")
+    List<Record> findKeysetPageAfter(@Param("userId") Long userId,
+                                     @Param("dateCreated") LocalDate dateCreated,
+                                     @Param("id") Long id,
+                                     @Param("to") LocalDate to,
+                                     Pageable pageable);
+
+    /**
+     * Get the latest {@code limit} records of each of the given users in a single query; each user is read by its own
+     * backward scan of the {@code (user_id, date_created, id)} index, stopping after {@code limit} rows.
+     */
+    @Query(nativeQuery = true, value = "select r.* from unnest(cast(array[:userIds] as bigint[])) as u(user_id) " +
+            "cross join lateral (select * from record " +
+            "where record.user_id = u.user_id order by record.date_created desc, record.id desc limit :limit) r " +
+            "order by r.user_id, r.date_created desc, r.id desc")
+    List<Record> findLatestByUserIds(@Param("userIds") Collection<Long> userIds, @Param("limit") int limit);
+
+    @Query("select new com.diploma.service.dto.RecordVersionDTO(r.id, r.version) from Record r where r.id = :id " +
+            "and r.dateCreated = (select k.dateCreated from RecordKey k where k.id = :id)")
+    Optional<RecordVersionDTO> findVersionById(@Param("id") Long id);
+
+    /**
+     * Check that a record exists from its {@code record_key} row, without probing the partitions of {@code record}.
+     */
+    @Query("select count(k) > 0 from RecordKey k where k.id = :id")
+    boolean existsByKey(@Param("id") Long id);
 }
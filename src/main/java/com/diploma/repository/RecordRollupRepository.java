@@ -0,0 +1,162 @@
+package com.diploma.repository;
+
+import com.diploma.domain.RecordRollup;
+import com.diploma.domain.enumeration.RollupBucket;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * JDBC repository for the {@code record_rollup} table.
+ * <p>
+ * Rollups are written with PostgreSQL upserts, which Spring Data JPA cannot express. Every write first takes a
+ * transaction-scoped advisory lock per user, keyed by the user id: a recompute then waits for concurrent merges of
+ * that user to commit, and its aggregate reads a snapshot taken after them instead of overwriting their deltas.
+ */
+@Repository
+@RequiredArgsConstructor
+public class RecordRollupRepository {
+
+    private static final String MERGE_SQL = "INSERT INTO record_rollup AS rr (user_id, bucket, bucket_start, " +
+            "heart_rate_count, heart_rate_sum, heart_rate_min, heart_rate_max, " +
+            "sugar_level_count, sugar_level_sum, sugar_level_min, sugar_level_max) " +
+            "VALUES (:userId, :bucket, :bucketStart, :heartRateCount, :heartRateSum, :heartRateMin, :heartRateMax, " +
+            ":sugarLevelCount, :sugarLevelSum, :sugarLevelMin, :sugarLevelMax) " +
+            "ON CONFLICT (user_id, bucket, bucket_start) DO UPDATE SET " +
+            "heart_rate_count = rr.heart_rate_count + EXCLUDED.heart_rate_count, " +
+            "heart_rate_sum = rr.heart_rate_sum + EXCLUDED.heart_rate_sum, " +
+            "heart_rate_min = LEAST(rr.heart_rate_min, EXCLUDED.heart_rate_min), " +
+            "heart_rate_max = GREATEST(rr.heart_rate_max, EXCLUDED.heart_rate_max), " +
+            "sugar_level_count = rr.sugar_level_count + EXCLUDED.sugar_level_count, " +
+            "sugar_level_sum = rr.sugar_level_sum + EXCLUDED.sugar_level_sum, " +
+            "sugar_level_min = LEAST(rr.sugar_level_min, EXCLUDED.sugar_level_min), " +
+            "sugar_level_max = GREATEST(rr.sugar_level_max, EXCLUDED.sugar_level_max)";
+
+    private static final String RECOMPUTE_SQL = "INSERT INTO record_rollup AS rr (user_id, bucket, bucket_start, " +
+            "heart_rate_count, heart_rate_sum, heart_rate_min, heart_rate_max, " +
+            "sugar_level_count, sugar_level_sum, sugar_level_min, sugar_level_max) " +
+            "SELECT :userId, :bucket, :bucketStart, " +
+            "count(heart_rate), coalesce(sum(heart_rate), 0), min(heart_rate), max(heart_rate), " +
+            "count(sugar_level), coalesce(sum(sugar_level), 0), min(sugar_level), max(sugar_level) " +
+            "FROM record WHERE user_id = :userId AND date_created >= :bucketStart AND date_created < :bucketEnd " +
+            "ON CONFLICT (user_id, bucket, bucket_start) DO UPDATE SET " +
+            "heart_rate_count = EXCLUDED.heart_rate_count, heart_rate_sum = EXCLUDED.heart_rate_sum, " +
+            "heart_rate_min = EXCLUDED.heart_rate_min, heart_rate_max = EXCLUDED.heart_rate_max, " +
+            "sugar_level_count = EXCLUDED.sugar_level_count, sugar_level_sum = EXCLUDED.sugar_level_sum, " +
+            "sugar_level_min = EXCLUDED.sugar_level_min, sugar_level_max = EXCLUDED.sugar_level_max";
+
+    private static final String DELETE_EMPTY_SQL = "DELETE FROM record_rollup " +
+            "WHERE user_id = :userId AND bucket = :bucket AND bucket_start = :bucketStart " +
+            "AND heart_rate_count = 0 AND sugar_level_count = 0";
+
+    private static final String FIND_SQL = "SELECT * FROM record_rollup " +
+            "WHERE user_id = :userId AND bucket = :bucket AND bucket_start >= :from AND bucket_start <= :to " +
+            "ORDER BY bucket_start";
+
+    // ordered, so that concurrent writers lock shared users in the same order
+    private static final String LOCK_SQL = "SELECT pg_advisory_xact_lock(id) " +
+            "FROM (SELECT DISTINCT unnest(CAST(:userIds AS bigint[])) AS id ORDER BY id) ids";
+
+    private static final RowMapper<RecordRollup> ROW_MAPPER = RecordRollupRepository::mapRow;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Add pre-aggregated deltas to the stored rollups in one JDBC batch, creating missing buckets.
+     *
+     * @param deltas the values to add, at most one per bucket.
+     */
+    public void merge(Collection<RecordRollup> deltas) {
+        lock(deltas.stream().map(RecordRollup::getUserId).collect(Collectors.toList()));
+        SqlParameterSource[] batch = deltas.stream()
+                .map(RecordRollupRepository::toParameters)
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(MERGE_SQL, batch);
+    }
+
+    /**
+     * Rebuild one bucket from the {@code record} rows it covers; used when values are removed,
+     * since minimums and maximums cannot be maintained by subtraction.
+     *
+     * @param userId      the owner of the records.
+     * @param bucket      the bucket granularity.
+     * @param bucketStart the first day of the bucket.
+     */
+    public void recompute(Long userId, RollupBucket bucket, LocalDate bucketStart) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("bucket", bucket.name())
+                .addValue("bucketStart", bucketStart)
+                .addValue("bucketEnd", bucket.next(bucketStart));
+        // a separate statement, so that the recompute below gets a snapshot taken once the lock is held
+        lock(List.of(userId));
+        jdbcTemplate.update(RECOMPUTE_SQL, parameters);
+        jdbcTemplate.update(DELETE_EMPTY_SQL, parameters);
+    }
+
+    public List<RecordRollup> findAll(Long userId, RollupBucket bucket, LocalDate from, LocalDate to) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("bucket", bucket.name())
+                .addValue("from", from)
+                .addValue("to", to);
+        return jdbcTemplate.query(FIND_SQL, parameters, ROW_MAPPER);
+    }
+
+    private void lock(List<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        // an array is bound as one parameter, where a collection would be expanded
+        Long[] ids = userIds.toArray(new Long[0]);
+        jdbcTemplate.query(LOCK_SQL, new MapSqlParameterSource("userIds", ids), (RowCallbackHandler) rs -> {
+        });
+    }
+
+    private static SqlParameterSource toParameters(RecordRollup rollup) {
+        return new MapSqlParameterSource()
+                .addValue("userId", rollup.getUserId())
+                .addValue("bucket", rollup.getBucket().name())
+                .addValue("bucketStart", rollup.getBucketStart())
+                .addValue("heartRateCount", rollup.getHeartRateCount())
+                .addValue("heartRateSum", rollup.getHeartRateSum())
+                .addValue("heartRateMin", rollup.getHeartRateMin())
+                .addValue("heartRateMax", rollup.getHeartRateMax())
+                .addValue("sugarLevelCount", rollup.getSugarLevelCount())
+                .addValue("sugarLevelSum", BigDecimal.valueOf(rollup.getSugarLevelSumTenths(), 1))
+                .addValue("sugarLevelMin", rollup.getSugarLevelMin())
+                .addValue("sugarLevelMax", rollup.getSugarLevelMax());
+    }
+
+    private static RecordRollup mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return RecordRollup.builder()
+                .userId(rs.getLong("user_id"))
+                .bucket(RollupBucket.valueOf(rs.getString("bucket")))
+                .bucketStart(rs.getObject("bucket_start", LocalDate.class))
+                .heartRateCount(rs.getLong("heart_rate_count"))
+                .heartRateSum(rs.getLong("heart_rate_sum"))
+                .heartRateMin(rs.getObject("heart_rate_min", Integer.class))
+                .heartRateMax(rs.getObject("heart_rate_max", Integer.class))
+                .sugarLevelCount(rs.getLong("sugar_level_count"))
+                .sugarLevelSumTenths(rs.getBigDecimal("sugar_level_sum").movePointRight(1).longValue())
+                .sugarLevelMin(toDouble(rs.getBigDecimal("sugar_level_min")))
+                .sugarLevelMax(toDouble(rs.getBigDecimal("sugar_level_max")))
+                .build();
+    }
+
+    private static Double toDouble(BigDecimal value) {
+        return value == null ? null : value.doubleValue();
+    }
+}
@@ -0,0 +1,116 @@
+package com.diploma.repository;
+
+import com.diploma.domain.Record;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * JDBC repository for versioned updates of the {@code record} table.
+ * <p>
+ * The version check, the update and the read-back are a single conditional {@code UPDATE ... RETURNING}
+ * statement, where JPA needs a {@code SELECT} to merge the entity before its {@code UPDATE}. The creation day is
+ * looked up in {@code record_key} so that only the partition holding the record is read and written.
+ */
+@Repository
+@RequiredArgsConstructor
+public class RecordUpdateRepository {
+
+    private static final String KEY_DATE_SQL = "(SELECT date_created FROM record_key WHERE id = :id)";
+
+    private static final String UPDATE_SQL = "WITH previous AS (SELECT heart_rate, sugar_level, date_created FROM record " +
+            "WHERE id = :id AND date_created = " + KEY_DATE_SQL + ") " +
+            "UPDATE record r SET heart_rate = :heartRate, sugar_level = :sugarLevel, " +
+            "date_created = :dateCreated, date_updated = :dateUpdated, version = r.version + 1 " +
+            "FROM previous WHERE r.id = :id AND r.date_created = " + KEY_DATE_SQL + " AND r.version = :version " +
+            "RETURNING r.id, r.user_id, r.heart_rate, r.sugar_level, r.date_created, r.date_updated, r.version, " +
+            "previous.heart_rate AS previous_heart_rate, previous.sugar_level AS previous_sugar_level, " +
+            "previous.date_created AS previous_date_created";
+
+    private static final RowMapper<Result> ROW_MAPPER = RecordUpdateRepository::mapRow;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Update the values of a record if it still has the expected version, and increment the version.
+     * <p>
+     * The second-level cache entry of the record is evicted once the surrounding transaction commits, since
+     * Hibernate does not see this statement.
+     *
+     * @param record  the new values; the owner of the record is not updatable.
+     * @param version the version the caller has read.
+     * @return the updated record with the readings and creation date it had before, or empty if the record does not exist
+     * or has another version.
+     */
+    public Optional<Result> update(Record record, Long version) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("id", record.getId())
+                .addValue("heartRate", record.getHeartRate())
+                .addValue("sugarLevel", record.getSugarLevel())
+                .addValue("dateCreated", record.getDateCreated())
+                .addValue("dateUpdated", record.getDateUpdated())
+                .addValue("version", version);
+        List<Result> results = jdbcTemplate.query(UPDATE_SQL, parameters, ROW_MAPPER);
+        if (results.isEmpty()) {
+            return Optional.empty();
+        }
+        evictAfterCommit(record.getId());
+        return Optional.of(results.get(0));
+    }
+
+    private void evictAfterCommit(Long id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            entityManagerFactory.getCache().evict(Record.class, id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                entityManagerFactory.getCache().evict(Record.class, id);
+            }
+        });
+    }
+
+    private static Result mapRow(ResultSet rs, int rowNum) throws SQLException {
+        Record record = Record.builder()
+                .id(rs.getLong("id"))
+                .userId(rs.getObject("user_id", Long.class))
+                .heartRate(rs.getObject("heart_rate", Integer.class))
+                .sugarLevel(toDouble(rs.getBigDecimal("sugar_level")))
+                .dateCreated(rs.getObject("date_created", LocalDate.class))
+                .dateUpdated(rs.getObject("date_updated", LocalDate.class))
+                .version(rs.getLong("version"))
+                .build();
+        return new Result(record, rs.getObject("previous_heart_rate", Integer.class),
+                toDouble(rs.getBigDecimal("previous_sugar_level")), rs.getObject("previous_date_created", LocalDate.class));
+    }
+
+    /**
+     * An updated record and the readings and creation date it had before the update.
+     */
+    @Value
+    public static class Result {
+        Record record;
+        Integer previousHeartRate;
+        Double previousSugarLevel;
+        LocalDate previousDateCreated;
+    }
+
+    private static Double toDouble(BigDecimal value) {
+        return value == null ? null : value.doubleValue();
+    }
+}
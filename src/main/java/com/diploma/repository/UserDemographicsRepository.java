@@ -0,0 +1,33 @@
+package com.diploma.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+
+/**
+ * JDBC repository streaming the demographics of every user that is not deleted, without hydrating users.
+ */
+@Repository
+public class UserDemographicsRepository {
+
+    private static final String DEMOGRAPHICS_SQL = "SELECT id, gender, birth_date, weight FROM user_account " +
+            "WHERE deleted_at IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserDemographicsRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(10_000);
+    }
+
+    /**
+     * @param handler receives rows of {@code id}, {@code gender}, {@code birth_date} and {@code weight}.
+     */
+    @Transactional(readOnly = true)
+    public void streamAll(RowCallbackHandler handler) {
+        jdbcTemplate.query(DEMOGRAPHICS_SQL, handler);
+    }
+}
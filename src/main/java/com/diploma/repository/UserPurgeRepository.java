@@ -0,0 +1,188 @@
+package com.diploma.repository;
+
+import com.diploma.domain.UserPurgeJob;
+import com.diploma.domain.enumeration.PurgeStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+/**
+ * JDBC repository for the purge of deleted users: the {@code user_purge_job} table and the set-based deletes
+ * of their rows.
+ * <p>
+ * Deleting through JPA would load every record of the user into the persistence context and delete them one
+ * statement at a time.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserPurgeRepository {
+
+    // the watermark of a job that has not deleted any record yet; record ids start at 1
+    private static final LocalDate BEFORE_FIRST_RECORD = LocalDate.of(1, 1, 1);
+
+    private static final String CREATE_SQL = "INSERT INTO user_purge_job (user_id) VALUES (:userId) " +
+            "ON CONFLICT (user_id) DO NOTHING";
+
+    private static final String FIND_SQL = "SELECT * FROM user_purge_job WHERE user_id = :userId";
+
+    private static final String FIND_UNFINISHED_SQL = "SELECT user_id FROM user_purge_job " +
+            "WHERE status <> 'DONE' ORDER BY created_at LIMIT :limit";
+
+    private static final String FIND_DELETED_SINCE_SQL = "SELECT user_id, created_at FROM user_purge_job " +
+            "WHERE created_at > :since";
+
+    // a job row locked by another instance is skipped rather than waited for
+    private static final String LOCK_SQL = "SELECT * FROM user_purge_job " +
+            "WHERE user_id = :userId AND status <> 'DONE' FOR UPDATE SKIP LOCKED";
+
+    private static final String START_SQL = "UPDATE user_purge_job SET status = 'RUNNING', " +
+            "records_total = (SELECT count(*) FROM record WHERE user_id = :userId), updated_at = CURRENT_TIMESTAMP " +
+            "WHERE user_id = :userId";
+
+    // one chunk in the order of the (user_id, date_created, id) index after the last deleted record, deleted by
+    // primary key; the plain date_created bound lets the planner skip the partitions already purged
+    private static final String DELETE_RECORDS_SQL = "WITH chunk AS (SELECT id, date_created FROM record " +
+            "WHERE user_id = :userId AND date_created >= :lastDateCreated " +
+            "AND (date_created, id) > (:lastDateCreated, :lastRecordId) ORDER BY date_created, id LIMIT :limit) " +
+            "DELETE FROM record r USING chunk WHERE r.user_id = :userId AND r.id = chunk.id " +
+            "AND r.date_created = chunk.date_created RETURNING r.date_created, r.id";
+
+    private static final String PROGRESS_SQL = "UPDATE user_purge_job SET records_deleted = records_deleted + :deleted, " +
+            "last_date_created = :lastDateCreated, last_record_id = :lastRecordId, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE user_id = :userId";
+
+    // records a late write-behind drain stored behind the watermark
+    private static final String DELETE_REMAINING_RECORDS_SQL = "DELETE FROM record WHERE user_id = :userId";
+
+    private static final String DELETE_ROLLUPS_SQL = "DELETE FROM record_rollup WHERE user_id = :userId";
+
+    private static final String DELETE_USER_SQL = "DELETE FROM user_account WHERE id = :userId AND deleted_at IS NOT NULL";
+
+    private static final String COMPLETE_SQL = "UPDATE user_purge_job SET status = 'DONE', " +
+            "updated_at = CURRENT_TIMESTAMP, completed_at = CURRENT_TIMESTAMP WHERE user_id = :userId";
+
+    private static final RowMapper<UserPurgeJob> ROW_MAPPER = UserPurgeRepository::mapRow;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Create the purge job of a user, unless it already exists.
+     */
+    public void create(Long userId) {
+        jdbcTemplate.update(CREATE_SQL, parameters(userId));
+    }
+
+    public Optional<UserPurgeJob> findById(Long userId) {
+        return jdbcTemplate.query(FIND_SQL, parameters(userId), ROW_MAPPER).stream().findFirst();
+    }
+
+    /**
+     * @return the users whose purge is not done, oldest first.
+     */
+    public List<Long> findUnfinished(int limit) {
+        return jdbcTemplate.queryForList(FIND_UNFINISHED_SQL, new MapSqlParameterSource("limit", limit), Long.class);
+    }
+
+    /**
+     * @return the ids of the users deleted after an instant, whose purge is done or not, with their deletion time.
+     */
+    public Map<Long, Instant> findDeletedSince(Instant since) {
+        Map<Long, Instant> deleted = new HashMap<>();
+        jdbcTemplate.query(FIND_DELETED_SINCE_SQL, new MapSqlParameterSource("since", Timestamp.from(since)),
+                (RowCallbackHandler) rs -> deleted.put(rs.getLong("user_id"), rs.getTimestamp("created_at").toInstant()));
+        return deleted;
+    }
+
+    /**
+     * Lock the unfinished purge job of a user until the end of the transaction.
+     *
+     * @return the job, or empty if it is done or locked by another transaction.
+     */
+    public Optional<UserPurgeJob> lock(Long userId) {
+        return jdbcTemplate.query(LOCK_SQL, parameters(userId), ROW_MAPPER).stream().findFirst();
+    }
+
+    /**
+     * Mark a job as running and count the records to delete.
+     */
+    public void start(Long userId) {
+        jdbcTemplate.update(START_SQL, parameters(userId));
+    }
+
+    /**
+     * Delete the next chunk of records of a user, after the last record deleted by the job, and add it to the
+     * progress of the job.
+     *
+     * @param job the locked job.
+     * @return the number of deleted records.
+     */
+    public int deleteRecords(UserPurgeJob job, int limit) {
+        LocalDate[] lastDateCreated = {job.getLastDateCreated() == null ? BEFORE_FIRST_RECORD : job.getLastDateCreated()};
+        long[] lastRecordId = {job.getLastRecordId() == null ? 0 : job.getLastRecordId()};
+        int[] deleted = new int[1];
+        MapSqlParameterSource parameters = parameters(job.getUserId())
+                .addValue("lastDateCreated", lastDateCreated[0])
+                .addValue("lastRecordId", lastRecordId[0])
+                .addValue("limit", limit);
+        // the order of RETURNING is unspecified, so the last record is the greatest one
+        jdbcTemplate.query(DELETE_RECORDS_SQL, parameters, (RowCallbackHandler) rs -> {
+            LocalDate dateCreated = rs.getObject("date_created", LocalDate.class);
+            long id = rs.getLong("id");
+            int order = dateCreated.compareTo(lastDateCreated[0]);
+            if (order > 0 || order == 0 && id > lastRecordId[0]) {
+                lastDateCreated[0] = dateCreated;
+                lastRecordId[0] = id;
+            }
+            deleted[0]++;
+        });
+        jdbcTemplate.update(PROGRESS_SQL, parameters(job.getUserId())
+                .addValue("deleted", deleted[0])
+                .addValue("lastDateCreated", lastDateCreated[0])
+                .addValue("lastRecordId", lastRecordId[0]));
+        return deleted[0];
+    }
+
+    /**
+     * Delete the remaining rows of a user whose records are all deleted, and mark its job as done.
+     */
+    public void complete(Long userId) {
+        jdbcTemplate.update(DELETE_REMAINING_RECORDS_SQL, parameters(userId));
+        jdbcTemplate.update(DELETE_ROLLUPS_SQL, parameters(userId));
+        jdbcTemplate.update(DELETE_USER_SQL, parameters(userId));
+        jdbcTemplate.update(COMPLETE_SQL, parameters(userId));
+    }
+
+    private static MapSqlParameterSource parameters(Long userId) {
+        return new MapSqlParameterSource("userId", userId);
+    }
+
+    private static UserPurgeJob mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return UserPurgeJob.builder()
+                .userId(rs.getLong("user_id"))
+                .status(PurgeStatus.valueOf(rs.getString("status")))
+                .recordsTotal(rs.getObject("records_total", Long.class))
+                .recordsDeleted(rs.getLong("records_deleted"))
+                .createdAt(toInstant(rs.getTimestamp("created_at")))
+                .updatedAt(toInstant(rs.getTimestamp("updated_at")))
+                .completedAt(toInstant(rs.getTimestamp("completed_at")))
+                .lastDateCreated(rs.getObject("last_date_created", LocalDate.class))
+                .lastRecordId(rs.getObject("last_record_id", Long.class))
+                .build();
+    }
+
+    private static Instant toInstant(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toInstant();
+    }
+}
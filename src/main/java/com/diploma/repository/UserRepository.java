@@ -1,9 +1,14 @@
 package com.diploma.repository;
 
 import com.diploma.domain.User;
+import com.diploma.service.dto.UserDTO;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+
+import java.time.Instant;
 import java.util.Optional;
 
 /**
@@ -11,6 +16,22 @@ import java.util.Optional;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User> {
+public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User>, UserRepositoryCustom {
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "true"))
     Optional<User> findUserByEmail(String email);
+
+    @Query("select new com.diploma.service.dto.UserDTO(u.id, u.name, u.surname, u.email, u.birthDate, u.gender, u.weight, u.role) " +
+            "from User u where u.id = :id")
+    Optional<UserDTO> findSummaryById(@Param("id") Long id);
+
+    @Query("select u.version from User u where u.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Modifying
+    @Query("update User u set u.deletedAt = :deletedAt where u.id = :id and u.deletedAt is null")
+    int markDeleted(@Param("id") Long id, @Param("deletedAt") Instant deletedAt);
+
+    @Modifying
+    @Query("update User u set u.password = :password where u.email = :email")
+    int updatePassword(@Param("email") String email, @Param("password") String password);
 }
\ No newline at end of file
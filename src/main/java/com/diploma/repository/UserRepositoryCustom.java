@@ -0,0 +1,22 @@
+package com.diploma.repository;
+
+import com.diploma.domain.User;
+import com.diploma.service.dto.UserDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Queries of {@link UserRepository} that Spring Data cannot derive.
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * Get a page of users matching the specification, selecting the user columns only.
+     *
+     * @param spec     the filter, which may also set the order.
+     * @param pageable the page to load.
+     * @return the page of users, without records.
+     */
+    Page<UserDTO> findAllSummaries(Specification<User> spec, Pageable pageable);
+}
@@ -0,0 +1,102 @@
+package com.diploma.repository;
+
+import com.diploma.domain.User;
+import com.diploma.domain.enumeration.Gender;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * JDBC repository for versioned updates of the {@code user_account} table.
+ * <p>
+ * The version check, the update and the read-back are a single conditional {@code UPDATE ... RETURNING}
+ * statement; the password and the role are not touched.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserUpdateRepository {
+
+    private static final String UPDATE_SQL = "UPDATE user_account SET name = :name, surname = :surname, " +
+            "email = :email, birth_date = :birthDate, gender = :gender, weight = :weight, version = version + 1 " +
+            "WHERE id = :id AND version = :version AND deleted_at IS NULL " +
+            "RETURNING id, name, surname, email, birth_date, gender, weight, role, version";
+
+    private static final RowMapper<User> ROW_MAPPER = UserUpdateRepository::mapRow;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Update the profile of a user if it still has the expected version, and increment the version.
+     * <p>
+     * The second-level cache entry of the user and the cached query results, which may resolve the previous
+     * email, are evicted once the surrounding transaction commits, since Hibernate does not see this statement.
+     *
+     * @param user    the new values.
+     * @param version the version the caller has read.
+     * @return the updated user without its password, or empty if the user does not exist or has another version.
+     */
+    public Optional<User> update(User user, Long version) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("id", user.getId())
+                .addValue("name", user.getName())
+                .addValue("surname", user.getSurname())
+                .addValue("email", user.getEmail())
+                .addValue("birthDate", user.getBirthDate())
+                .addValue("gender", user.getGender() == null ? null : user.getGender().name())
+                .addValue("weight", user.getWeight())
+                .addValue("version", version);
+        List<User> results = jdbcTemplate.query(UPDATE_SQL, parameters, ROW_MAPPER);
+        if (results.isEmpty()) {
+            return Optional.empty();
+        }
+        evictAfterCommit(user.getId());
+        return Optional.of(results.get(0));
+    }
+
+    private void evictAfterCommit(Long id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(id);
+            }
+        });
+    }
+
+    private void evict(Long id) {
+        entityManagerFactory.getCache().evict(User.class, id);
+        entityManagerFactory.getCache().unwrap(org.hibernate.Cache.class).evictDefaultQueryRegion();
+    }
+
+    private static User mapRow(ResultSet rs, int rowNum) throws SQLException {
+        String gender = rs.getString("gender");
+        int weight = rs.getInt("weight");
+        Double weightOrNull = rs.wasNull() ? null : (double) weight;
+        return User.builder()
+                .id(rs.getLong("id"))
+                .name(rs.getString("name"))
+                .surname(rs.getString("surname"))
+                .email(rs.getString("email"))
+                .birthDate(rs.getObject("birth_date", LocalDate.class))
+                .gender(gender == null ? null : Gender.valueOf(gender))
+                .weight(weightOrNull)
+                .role(rs.getString("role"))
+                .version(rs.getLong("version"))
+                .build();
+    }
+}
@@ -0,0 +1,106 @@
+package com.diploma.repository.sql;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * {@link DataSource} feeding the {@link QueryCollector} of the current thread with every statement executed on its
+ * connections, whether issued by Hibernate, a {@code JdbcTemplate} or plain JDBC, and with the time spent executing
+ * them.
+ * <p>
+ * Connections and statements are wrapped in JDK proxies that delegate every call; a JDBC batch counts as one
+ * statement. Without an active collector the only cost is the proxy dispatch.
+ */
+public class CountingDataSource extends DelegatingDataSource {
+
+    private static final String UNKNOWN_SQL = "<batch>";
+
+    public CountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return proxy(Connection.class, new ConnectionHandler(obtainTargetDataSource().getConnection()));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return proxy(Connection.class, new ConnectionHandler(obtainTargetDataSource().getConnection(username, password)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(CountingDataSource.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+
+        private ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = CountingDataSource.invoke(connection, method, args);
+            if (result instanceof CallableStatement) {
+                return proxy(CallableStatement.class, new StatementHandler((Statement) result, (String) args[0]));
+            }
+            if (result instanceof PreparedStatement) {
+                return proxy(PreparedStatement.class, new StatementHandler((Statement) result, (String) args[0]));
+            }
+            if (result instanceof Statement) {
+                return proxy(Statement.class, new StatementHandler((Statement) result, null));
+            }
+            return result;
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final String sql;
+
+        private StatementHandler(Statement statement, String sql) {
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            QueryCollector collector = QueryCollector.current();
+            if (collector == null || !method.getName().startsWith("execute")) {
+                return CountingDataSource.invoke(statement, method, args);
+            }
+            String executed = sql;
+            if (executed == null) {
+                executed = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : UNKNOWN_SQL;
+            }
+            collector.onStatement(executed);
+            long start = System.nanoTime();
+            try {
+                return CountingDataSource.invoke(statement, method, args);
+            } finally {
+                collector.onExecution(System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.diploma.repository.sql;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Statistics of the SQL statements executed on the current thread while a collection is active, fed by
+ * {@link CountingDataSource}.
+ * <p>
+ * Statements are grouped by their SQL text, which Hibernate and the JDBC templates render with {@code ?}
+ * placeholders, so repeated loads of the same association show up as one shape with a high count.
+ */
+public final class QueryCollector {
+
+    private static final ThreadLocal<QueryCollector> CURRENT = new ThreadLocal<>();
+    private static final int MAX_SHAPES = 1000;
+
+    private final Map<String, Integer> shapes = new HashMap<>();
+    private int count;
+    private long jdbcNanos;
+
+    private QueryCollector() {
+    }
+
+    public static QueryCollector start() {
+        QueryCollector collector = new QueryCollector();
+        CURRENT.set(collector);
+        return collector;
+    }
+
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @return the active collector of the current thread, or {@code null}.
+     */
+    public static QueryCollector current() {
+        return CURRENT.get();
+    }
+
+    void onStatement(String sql) {
+        count++;
+        if (shapes.size() < MAX_SHAPES || shapes.containsKey(sql)) {
+            shapes.merge(sql, 1, Integer::sum);
+        }
+    }
+
+    void onExecution(long nanos) {
+        jdbcNanos += nanos;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getJdbcNanos() {
+        return jdbcNanos;
+    }
+
+    /**
+     * @return the statement issued the most times, or {@code null} if none was issued.
+     */
+    public Map.Entry<String, Integer> getMostRepeated() {
+        return shapes.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .orElse(null);
+    }
+}
@@ -0,0 +1,30 @@
+package com.diploma.security;
+
+import lombok.Value;
+
+import java.security.Principal;
+
+/**
+ * Lightweight principal built from the claims of a verified access token, so the caller is known
+ * without loading the {@link com.diploma.domain.User} entity.
+ */
+@Value
+public class AuthenticatedUser implements Principal {
+
+    /**
+     * Id of the user, {@code null} for tokens issued before the claim was introduced.
+     */
+    Long id;
+    String email;
+    String role;
+
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    @Override
+    public String toString() {
+        return email;
+    }
+}
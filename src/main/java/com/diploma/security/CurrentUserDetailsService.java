@@ -4,14 +4,16 @@ import com.diploma.domain.User;
 import com.diploma.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 
 @Service
 @RequiredArgsConstructor
-public class CurrentUserDetailsService implements UserDetailsService {
+public class CurrentUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
 
@@ -21,4 +23,16 @@ public class CurrentUserDetailsService implements UserDetailsService {
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
         return new CurrentUser(user);
     }
+
+    /**
+     * Store a password re-hashed with the configured BCrypt strength after a successful login.
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        userRepository.updatePassword(userDetails.getUsername(), newPassword);
+        User user = ((CurrentUser) userDetails).getUser();
+        user.setPassword(newPassword);
+        return new CurrentUser(user);
+    }
 }
@@ -0,0 +1,67 @@
+package com.diploma.security;
+
+import com.diploma.config.ApplicationProperties;
+import com.diploma.repository.UserPurgeRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ids of the deleted users, whose access tokens stay valid until they expire but are rejected by the
+ * {@link com.diploma.security.filter.AuthorizationFilter}.
+ * <p>
+ * A delete of this instance is known once its transaction commits; the deletes of other instances are learnt by
+ * reloading the ids of the purge jobs every {@code application.users.purge.deleted-users-refresh-interval}. A user is
+ * forgotten once {@code application.security.jwt.access-token-validity} has passed since its deletion, since every
+ * access token issued before has expired by then.
+ */
+@Component
+@RequiredArgsConstructor
+public class DeletedUsers {
+
+    private final Logger log = LoggerFactory.getLogger(DeletedUsers.class);
+    private final UserPurgeRepository userPurgeRepository;
+    private final ApplicationProperties applicationProperties;
+    private final Map<Long, Instant> deletedAt = new ConcurrentHashMap<>();
+
+    /**
+     * @return whether the user is deleted; {@code false} for a {@code null} id.
+     */
+    public boolean contains(Long userId) {
+        return userId != null && deletedAt.containsKey(userId);
+    }
+
+    public void onDeleted(Long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deletedAt.putIfAbsent(userId, Instant.now());
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                deletedAt.putIfAbsent(userId, Instant.now());
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${application.users.purge.deleted-users-refresh-interval:10000}")
+    public void refresh() {
+        Instant since = Instant.now().minus(applicationProperties.getSecurity().getJwt().getAccessTokenValidity());
+        try {
+            // deletes are never undone, so ids are only added until they expire
+            deletedAt.putAll(userPurgeRepository.findDeletedSince(since));
+        } catch (DataAccessException e) {
+            log.warn("Could not reload the deleted users", e);
+        }
+        deletedAt.values().removeIf(at -> at.isBefore(since));
+    }
+}
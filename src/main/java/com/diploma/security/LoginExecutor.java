@@ -0,0 +1,105 @@
+package com.diploma.security;
+
+import com.diploma.config.ApplicationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs password verification of login attempts on a dedicated, core-sized pool.
+ * <p>
+ * BCrypt is CPU bound, so running it on more threads than cores only adds latency. Attempts beyond the
+ * queue capacity are rejected immediately instead of piling up on request threads, which keeps a login
+ * spike from starving the rest of the API.
+ */
+@Component
+public class LoginExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final long timeout;
+    private final Timer latency;
+    private final Counter rejected;
+
+    public LoginExecutor(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        ApplicationProperties.Security.Login login = applicationProperties.getSecurity().getLogin();
+        int poolSize = login.getPoolSize() > 0 ? login.getPoolSize() : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(login.getQueueCapacity()),
+                new CustomizableThreadFactory("login-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.timeout = login.getTimeout();
+        this.latency = Timer.builder("login.latency")
+                .description("Time from admission to the end of the password check")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("login.rejected")
+                .description("Login attempts rejected because the hashing pool was saturated")
+                .register(meterRegistry);
+        Gauge.builder("login.queue.depth", executor, pool -> pool.getQueue().size())
+                .description("Login attempts waiting for a hashing thread")
+                .register(meterRegistry);
+        Gauge.builder("login.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Login attempts being verified")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run an authentication on the hashing pool and wait for its outcome.
+     *
+     * @param authentication the password check.
+     * @return the authenticated token.
+     * @throws LoginRejectedException if the attempt could not be admitted or did not finish in time.
+     */
+    public Authentication authenticate(Callable<Authentication> authentication) {
+        long start = System.nanoTime();
+        Future<Authentication> future;
+        try {
+            future = executor.submit(authentication);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new LoginRejectedException("Too many concurrent login attempts");
+        }
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new LoginRejectedException("Login attempt timed out");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new LoginRejectedException("Login attempt interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AuthenticationException) {
+                throw (AuthenticationException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,11 @@
+package com.diploma.security;
+
+/**
+ * Thrown when a login attempt cannot be admitted because the password hashing workers are saturated.
+ */
+public class LoginRejectedException extends RuntimeException {
+
+    public LoginRejectedException(String message) {
+        super(message);
+    }
+}
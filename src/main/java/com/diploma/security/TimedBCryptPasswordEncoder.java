@@ -0,0 +1,39 @@
+package com.diploma.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * {@link BCryptPasswordEncoder} publishing the duration of hashing and verification.
+ */
+public class TimedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+
+    public TimedBCryptPasswordEncoder(int strength, MeterRegistry meterRegistry) {
+        super(strength);
+        this.encodeTimer = timer("encode", meterRegistry);
+        this.matchesTimer = timer("matches", meterRegistry);
+    }
+
+    private static Timer timer(String operation, MeterRegistry meterRegistry) {
+        return Timer.builder("bcrypt")
+                .tag("operation", operation)
+                .description("BCrypt password hashing")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return encodeTimer.record(() -> super.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        Boolean matches = matchesTimer.record(() -> super.matches(rawPassword, encodedPassword));
+        return Boolean.TRUE.equals(matches);
+    }
+}
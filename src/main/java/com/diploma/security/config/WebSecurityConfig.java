@@ -1,7 +1,13 @@
 package com.diploma.security.config;
 
+import com.diploma.config.ApplicationProperties;
+import com.diploma.domain.enumeration.Role;
+import com.diploma.security.CurrentUserDetailsService;
+import com.diploma.security.DeletedUsers;
+import com.diploma.security.LoginExecutor;
 import com.diploma.security.filter.AuthenticationFilter;
 import com.diploma.security.filter.AuthorizationFilter;
+import com.diploma.security.jwt.TokenProvider;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
@@ -9,7 +15,6 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
@@ -20,12 +25,18 @@ import static org.springframework.http.HttpMethod.GET;
 @RequiredArgsConstructor
 public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
-    private final UserDetailsService userDetailsService;
+    private final CurrentUserDetailsService userDetailsService;
     private final BCryptPasswordEncoder bCryptPasswordEncoder;
+    private final TokenProvider tokenProvider;
+    private final DeletedUsers deletedUsers;
+    private final LoginExecutor loginExecutor;
+    private final ApplicationProperties applicationProperties;
 
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(userDetailsService).passwordEncoder(bCryptPasswordEncoder);
+        auth.userDetailsService(userDetailsService)
+                .passwordEncoder(bCryptPasswordEncoder)
+                .userDetailsPasswordManager(userDetailsService);
     }
 
     @Override
@@ -34,10 +45,12 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS);
         http.authorizeRequests()
                 .antMatchers("/","/login", "/api/users/token/refresh ").permitAll()
+                .antMatchers(GET, "/actuator/health", "/actuator/prometheus").permitAll()
                 .antMatchers(GET, "api/users/**").hasAnyAuthority("ROLE_ADMIN")
+                .antMatchers("/api/analytics/**").hasAnyAuthority(Role.ANALYST.getValue(), Role.ADMIN.getValue())
 //                .antMatchers("api/users/**").hasAnyAuthority("ROLE_USER")
                 .anyRequest().authenticated();
-        http.addFilter(new AuthenticationFilter(super.authenticationManager()))
-                .addFilterBefore(new AuthorizationFilter(), UsernamePasswordAuthenticationFilter.class);
+        http.addFilter(new AuthenticationFilter(super.authenticationManager(), tokenProvider, loginExecutor, applicationProperties))
+                .addFilterBefore(new AuthorizationFilter(tokenProvider, deletedUsers), UsernamePasswordAuthenticationFilter.class);
     }
 }
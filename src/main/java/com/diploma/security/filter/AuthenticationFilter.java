@@ -1,61 +1,79 @@
 package com.diploma.security.filter;
 
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.algorithms.Algorithm;
+import com.diploma.config.ApplicationProperties;
+import com.diploma.security.CurrentUser;
+import com.diploma.security.LoginExecutor;
+import com.diploma.security.LoginRejectedException;
+import com.diploma.security.jwt.TokenProvider;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 import javax.servlet.FilterChain;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 
 
 @RequiredArgsConstructor
 public class AuthenticationFilter extends UsernamePasswordAuthenticationFilter {
 
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
     private final AuthenticationManager authenticationManager;
+    private final TokenProvider tokenProvider;
+    private final LoginExecutor loginExecutor;
+    private final ApplicationProperties applicationProperties;
 
     @Override
     public Authentication attemptAuthentication(HttpServletRequest request, HttpServletResponse response) throws AuthenticationException {
         String username = request.getParameter("username");
         String password = request.getParameter("password");
         UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(username, password);
-        return authenticationManager.authenticate(authenticationToken);
+        try {
+            return loginExecutor.authenticate(() -> authenticationManager.authenticate(authenticationToken));
+        } catch (LoginRejectedException e) {
+            rejectAttempt(response, e);
+            return null;
+        }
+    }
+
+    private void rejectAttempt(HttpServletResponse response, LoginRejectedException e) {
+        response.setStatus(SERVICE_UNAVAILABLE.value());
+        response.setHeader(RETRY_AFTER, String.valueOf(applicationProperties.getSecurity().getLogin().getRetryAfter()));
+        Map<String, String> error = new HashMap<>();
+        error.put("error_message", e.getMessage());
+        response.setContentType(APPLICATION_JSON_VALUE);
+        try {
+            OBJECT_MAPPER.writeValue(response.getOutputStream(), error);
+        } catch (IOException ioException) {
+            logger.debug("Could not write login rejection", ioException);
+        }
     }
 
     @Override
     protected void successfulAuthentication(HttpServletRequest request, HttpServletResponse response, FilterChain chain, Authentication authentication) throws IOException {
-        User user = (User)authentication.getPrincipal();
-        Algorithm algorithm = Algorithm.HMAC256("secret".getBytes());
-        String accessToken = JWT.create()
-                .withSubject(user.getUsername())
-                .withExpiresAt(new Date(System.currentTimeMillis() + 120 * 60 * 1000))
-                .withIssuer(request.getRequestURI())
-                .withClaim("role", user.getAuthorities().stream().findFirst().get().getAuthority())
-                .sign(algorithm);
-        String refreshToken = JWT.create()
-                .withSubject(user.getUsername())
-                .withExpiresAt(new Date(System.currentTimeMillis() + 30 * 60 * 1000))
-                .withIssuer(request.getRequestURI())
-                .withClaim("role", user.getAuthorities().stream().findFirst().get().getAuthority())
-                .sign(algorithm);
+        CurrentUser user = (CurrentUser)authentication.getPrincipal();
+        Long userId = user.getUser().getId();
+        String role = user.getAuthorities().stream().findFirst().get().getAuthority();
+        long accessTokenValidity = applicationProperties.getSecurity().getJwt().getAccessTokenValidity().toMillis();
+        String accessToken = tokenProvider.createToken(user.getUsername(), userId, role, request.getRequestURI(), accessTokenValidity);
+        String refreshToken = tokenProvider.createToken(user.getUsername(), userId, role, request.getRequestURI(), 30 * 60 * 1000);
 
         Map<String, String> tokens = new HashMap<>();
         tokens.put("access_token", accessToken);
         tokens.put("refresh_token", refreshToken);
         response.setContentType(APPLICATION_JSON_VALUE);
-        new ObjectMapper().writeValue(response.getOutputStream(), tokens);
+        OBJECT_MAPPER.writeValue(response.getOutputStream(), tokens);
     }
 }
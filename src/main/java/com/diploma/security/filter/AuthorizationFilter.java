@@ -1,10 +1,11 @@
 package com.diploma.security.filter;
 
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.JWTVerifier;
-import com.auth0.jwt.algorithms.Algorithm;
-import com.auth0.jwt.interfaces.DecodedJWT;
+import com.diploma.security.AuthenticatedUser;
+import com.diploma.security.DeletedUsers;
+import com.diploma.security.jwt.TokenProvider;
+import com.diploma.security.jwt.VerifiedToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -23,9 +24,15 @@ import static org.springframework.http.HttpHeaders.AUTHORIZATION;
 import static org.springframework.http.HttpStatus.FORBIDDEN;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 
+@RequiredArgsConstructor
 public class AuthorizationFilter extends OncePerRequestFilter {
     
     public final static String TOKEN_PREFIX = "Bearer ";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final TokenProvider tokenProvider;
+    private final DeletedUsers deletedUsers;
     
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
@@ -36,14 +43,15 @@ public class AuthorizationFilter extends OncePerRequestFilter {
             if (authorizationHeader != null && authorizationHeader.startsWith(TOKEN_PREFIX)) {
                 try {
                     String token = authorizationHeader.substring(TOKEN_PREFIX.length());
-                    Algorithm algorithm = Algorithm.HMAC256("secret".getBytes());
-                    JWTVerifier verifier = JWT.require(algorithm).build();
-                    DecodedJWT decodedJWT = verifier.verify(token);
-                    String username = decodedJWT.getSubject();
-                    String role = String.valueOf(decodedJWT.getClaim("role"));
+                    VerifiedToken verifiedToken = tokenProvider.verify(token);
+                    if (deletedUsers.contains(verifiedToken.getUserId())) {
+                        throw new IllegalStateException("The user of this token is deleted");
+                    }
+                    String role = verifiedToken.getRole();
+                    AuthenticatedUser principal = new AuthenticatedUser(verifiedToken.getUserId(), verifiedToken.getSubject(), role);
 
                     UsernamePasswordAuthenticationToken authenticationToken =
-                            new UsernamePasswordAuthenticationToken(username, null, List.of(new SimpleGrantedAuthority(role)));
+                            new UsernamePasswordAuthenticationToken(principal, null, List.of(new SimpleGrantedAuthority(role)));
                     SecurityContextHolder.getContext().setAuthentication(authenticationToken);
                     filterChain.doFilter(request, response);
                 } catch (Exception e) {
@@ -52,7 +60,7 @@ public class AuthorizationFilter extends OncePerRequestFilter {
                     Map<String, String> error = new HashMap<>();
                     error.put("error_message", e.getMessage());
                     response.setContentType(APPLICATION_JSON_VALUE);
-                    new ObjectMapper().writeValue(response.getOutputStream(), error );
+                    OBJECT_MAPPER.writeValue(response.getOutputStream(), error );
                 }
             } else {
                 filterChain.doFilter(request,response);
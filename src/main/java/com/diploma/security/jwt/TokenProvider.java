@@ -0,0 +1,97 @@
+package com.diploma.security.jwt;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.diploma.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * Creates and verifies the JWTs of the API.
+ * <p>
+ * The algorithm and the verifier are immutable and shared by all requests. Access tokens that were
+ * already verified are served from a {@link VerifiedTokenCache}, so repeated requests of a client skip
+ * the HMAC check until the token expires.
+ */
+@Component
+public class TokenProvider {
+
+    private static final String ROLE_CLAIM = "role";
+    private static final String USER_ID_CLAIM = "user_id";
+
+    private final Algorithm algorithm;
+    private final JWTVerifier verifier;
+    private final VerifiedTokenCache cache;
+    private final Timer signTimer;
+    private final Timer verifyTimer;
+
+    public TokenProvider(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        ApplicationProperties.Security.Jwt jwt = applicationProperties.getSecurity().getJwt();
+        this.algorithm = Algorithm.HMAC256(jwt.getSecret().getBytes(StandardCharsets.UTF_8));
+        this.verifier = JWT.require(algorithm).build();
+        this.cache = jwt.getCacheMaxSize() > 0 ? new VerifiedTokenCache(jwt.getCacheMaxSize(), meterRegistry) : null;
+        this.signTimer = Timer.builder("jwt.sign")
+                .description("Token signing")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.verifyTimer = Timer.builder("jwt.verify")
+                .description("Token signature verification, cache hits excluded")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public String createToken(String subject, Long userId, String role, String issuer, long validityMillis) {
+        return signTimer.record(() -> JWT.create()
+                .withSubject(subject)
+                .withExpiresAt(new Date(System.currentTimeMillis() + validityMillis))
+                .withIssuer(issuer)
+                .withClaim(USER_ID_CLAIM, userId)
+                .withClaim(ROLE_CLAIM, role)
+                .sign(algorithm));
+    }
+
+    /**
+     * Verify a token, bypassing the cache.
+     *
+     * @throws com.auth0.jwt.exceptions.JWTVerificationException if the token is not valid.
+     */
+    public DecodedJWT decode(String token) {
+        return verifyTimer.record(() -> verifier.verify(token));
+    }
+
+    /**
+     * Verify a token, answering from the cache when it was already verified.
+     *
+     * @throws com.auth0.jwt.exceptions.JWTVerificationException if the token is not valid.
+     */
+    public VerifiedToken verify(String token) {
+        if (cache == null) {
+            return toVerifiedToken(decode(token));
+        }
+        ByteBuffer key = cache.key(token);
+        VerifiedToken verifiedToken = cache.get(key);
+        if (verifiedToken == null) {
+            verifiedToken = toVerifiedToken(decode(token));
+            if (verifiedToken.getExpiresAt() != Long.MAX_VALUE) {
+                cache.put(key, verifiedToken);
+            }
+        }
+        return verifiedToken;
+    }
+
+    private static VerifiedToken toVerifiedToken(DecodedJWT decodedJWT) {
+        Date expiresAt = decodedJWT.getExpiresAt();
+        return new VerifiedToken(
+                decodedJWT.getSubject(),
+                decodedJWT.getClaim(USER_ID_CLAIM).asLong(),
+                decodedJWT.getClaim(ROLE_CLAIM).asString(),
+                expiresAt == null ? Long.MAX_VALUE : expiresAt.getTime());
+    }
+}
@@ -0,0 +1,18 @@
+package com.diploma.security.jwt;
+
+import lombok.Value;
+
+/**
+ * The claims of a token whose signature and expiry have been checked.
+ */
+@Value
+public class VerifiedToken {
+
+    String subject;
+    Long userId;
+    String role;
+    /**
+     * Expiry of the token, in epoch milliseconds.
+     */
+    long expiresAt;
+}
@@ -0,0 +1,88 @@
+package com.diploma.security.jwt;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of tokens that already passed signature verification, keyed by the SHA-256 digest of the token.
+ * <p>
+ * An entry is never returned after the expiry of its token. Expired entries are swept when the cache is full,
+ * at most once per second; if the cache is still full afterwards new tokens are simply not cached.
+ */
+public class VerifiedTokenCache {
+
+    private static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+    private final Map<ByteBuffer, VerifiedToken> tokens = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong();
+    private final int maxSize;
+    private final Counter hits;
+    private final Counter misses;
+
+    public VerifiedTokenCache(int maxSize, MeterRegistry meterRegistry) {
+        this.maxSize = maxSize;
+        this.hits = Counter.builder("jwt.verification.cache").tag("result", "hit")
+                .description("Token verifications answered from the cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("jwt.verification.cache").tag("result", "miss")
+                .description("Token verifications that required checking the signature")
+                .register(meterRegistry);
+        Gauge.builder("jwt.verification.cache.size", tokens, Map::size)
+                .description("Verified tokens currently cached")
+                .register(meterRegistry);
+    }
+
+    public ByteBuffer key(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the cached token, or {@code null} if it is absent or expired.
+     */
+    public VerifiedToken get(ByteBuffer key) {
+        VerifiedToken token = tokens.get(key);
+        if (token != null && token.getExpiresAt() <= System.currentTimeMillis()) {
+            tokens.remove(key, token);
+            token = null;
+        }
+        if (token == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return token;
+    }
+
+    public void put(ByteBuffer key, VerifiedToken token) {
+        if (tokens.size() >= maxSize) {
+            sweep();
+            if (tokens.size() >= maxSize) {
+                return;
+            }
+        }
+        tokens.put(key, token);
+    }
+
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        long last = lastSweep.get();
+        if (now - last < SWEEP_INTERVAL_MILLIS || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        tokens.values().removeIf(token -> token.getExpiresAt() <= now);
+    }
+}
@@ -0,0 +1,91 @@
+package com.diploma.service;
+
+import com.diploma.config.ApplicationProperties;
+import com.diploma.domain.Record;
+import com.diploma.domain.enumeration.RollupBucket;
+import com.diploma.repository.ReactiveRecordRepository;
+import com.diploma.service.dto.RecordStatsDTO;
+import com.diploma.service.dto.RecordsCursorPageDTO;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Non-blocking read service for {@link Record}, backing the {@code /api/v2/records} endpoints.
+ * <p>
+ * Results match the ones of {@link RecordService} and {@link RecordRollupService}; no thread is held while a
+ * query is in flight.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReactiveRecordService {
+
+    private final Logger log = LoggerFactory.getLogger(ReactiveRecordService.class);
+    private final ReactiveRecordRepository reactiveRecordRepository;
+    private final ApplicationProperties applicationProperties;
+
+    /**
+     * Get a page of a user's records ordered by {@code (dateCreated, id)}, starting after the cursor.
+     *
+     * @param userId the owner of the records.
+     * @param cursor the {@code nextCursor} of the previous page, or {@code null} for the first page.
+     * @param limit  the maximum number of records in the page.
+     * @param from   the first creation day to list, or {@code null} for the default one of {@link RecordListingRange}.
+     * @param to     the last creation day to list, or {@code null} for today.
+     * @return the page, with the cursor of the next page if there is one.
+     */
+    public Mono<RecordsCursorPageDTO> getRecordsAfter(Long userId, String cursor, int limit, LocalDate from, LocalDate to) {
+        log.debug("Request to get Records of user {} after cursor : {}", userId, cursor);
+        RecordListingRange range = RecordListingRange.of(from, to, applicationProperties.getRecords().getListingDefaultMonths());
+        Flux<Record> records;
+        if (cursor == null) {
+            records = reactiveRecordRepository.findFirstKeysetPage(userId, range.getFrom(), range.getTo(), limit + 1);
+        } else {
+            RecordCursor after = RecordCursor.decode(cursor);
+            records = reactiveRecordRepository.findKeysetPageAfter(userId, after.getDateCreated(), after.getId(), range.getTo(), limit + 1);
+        }
+        return records.collectList().map(page -> toPage(page, limit));
+    }
+
+    /**
+     * Get one record of a user.
+     *
+     * @param userId the owner of the record.
+     * @param id     the id of the record.
+     * @return the record, or empty if the user has no record with this id.
+     */
+    public Mono<Record> getById(Long userId, Long id) {
+        log.debug("Request to get Record : {}", id);
+        return reactiveRecordRepository.findByIdAndUserId(id, userId);
+    }
+
+    /**
+     * Get pre-aggregated statistics of a user.
+     *
+     * @param userId the owner of the records.
+     * @param bucket the bucket granularity.
+     * @param from   the first day of the range.
+     * @param to     the last day of the range.
+     * @return one entry per non-empty bucket overlapping the range, ordered by time.
+     */
+    public Flux<RecordStatsDTO> getStats(Long userId, RollupBucket bucket, LocalDate from, LocalDate to) {
+        log.debug("Request to get {} Record stats of user {} from {} to {}", bucket, userId, from, to);
+        return reactiveRecordRepository.findRollups(userId, bucket, bucket.start(from), to)
+                .map(RecordStatsDTO::of);
+    }
+
+    private static RecordsCursorPageDTO toPage(List<Record> records, int limit) {
+        if (records.size() <= limit) {
+            return new RecordsCursorPageDTO(records, null);
+        }
+        List<Record> content = records.subList(0, limit);
+        Record last = content.get(limit - 1);
+        return new RecordsCursorPageDTO(content, new RecordCursor(last.getDateCreated(), last.getId()).encode());
+    }
+}
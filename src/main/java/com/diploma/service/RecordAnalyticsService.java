@@ -0,0 +1,467 @@
+package com.diploma.service;
+
+import com.diploma.config.ApplicationProperties;
+import com.diploma.domain.Record;
+import com.diploma.domain.User;
+import com.diploma.domain.enumeration.Gender;
+import com.diploma.repository.RecordReadingRepository;
+import com.diploma.repository.UserDemographicsRepository;
+import com.diploma.service.analytics.CohortAggregation;
+import com.diploma.service.analytics.CohortQuery;
+import com.diploma.service.analytics.LogLinearScale;
+import com.diploma.service.analytics.MergedSketch;
+import com.diploma.service.analytics.ParallelScan;
+import com.diploma.service.analytics.PartialAggregate;
+import com.diploma.service.analytics.RecordAggregation;
+import com.diploma.service.analytics.RecordAnalyticsQuery;
+import com.diploma.service.analytics.RecordColumnStore;
+import com.diploma.service.analytics.RecordSketches;
+import com.diploma.service.analytics.UserDemographics;
+import com.diploma.service.dto.RecordAggregateDTO;
+import com.diploma.service.dto.RecordPercentilesDTO;
+import com.diploma.web.rest.errors.ProcessException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Service keeping every record in a {@link RecordColumnStore}, and the demographics of every user in
+ * {@link UserDemographics}, for analytical queries.
+ * <p>
+ * Both are loaded from the database in streaming passes after startup, then kept up to date by the record and user
+ * write paths once their transaction commits. Committed changes are only queued on the request thread; a single applier
+ * thread loads the store, then applies the queued changes in order under the write lock, so changes committed during
+ * the load win over its possibly older rows, and a write is never held up by a long query nor failed by the store.
+ * Every applied batch moves the watermark that keys the cohort result cache. The store reports its row changes to
+ * per-user {@link RecordSketches}, so the percentile sketches follow every record write, update and delete.
+ * <p>
+ * Queries scan the chunks of the store in parallel on a dedicated {@link ForkJoinPool} while holding the read
+ * lock; changes take the write lock. A query can be cancelled by its id, and is cancelled after
+ * {@code application.analytics.query-timeout}.
+ */
+@Service
+public class RecordAnalyticsService {
+
+    private static final int MAX_QUANTILES = 20;
+    private static final int CHANGE_BATCH_SIZE = 1024;
+
+    private final Logger log = LoggerFactory.getLogger(RecordAnalyticsService.class);
+    private final ApplicationProperties.Analytics analytics;
+    private final RecordReadingRepository recordReadingRepository;
+    private final UserDemographicsRepository userDemographicsRepository;
+    private final RecordSketches sketches;
+    private final RecordColumnStore store;
+    private final UserDemographics demographics = new UserDemographics();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ForkJoinPool pool;
+    private final Map<String, AtomicBoolean> runningQueries = new ConcurrentHashMap<>();
+    private final Cache<List<Object>, List<RecordAggregateDTO>> cohortCache;
+    private final BlockingQueue<Runnable> changes = new LinkedBlockingQueue<>();
+    private volatile boolean accepting = true;
+    private volatile Thread applier;
+    private boolean loaded;
+    private long watermark;
+
+    public RecordAnalyticsService(ApplicationProperties applicationProperties, RecordReadingRepository recordReadingRepository,
+                                  UserDemographicsRepository userDemographicsRepository, MeterRegistry meterRegistry) {
+        this.analytics = applicationProperties.getAnalytics();
+        this.recordReadingRepository = recordReadingRepository;
+        this.userDemographicsRepository = userDemographicsRepository;
+        this.sketches = new RecordSketches(new LogLinearScale(analytics.getSketches().getPrecisionBits()),
+                analytics.getSketches().getBucket());
+        this.store = new RecordColumnStore(sketches);
+        this.pool = new ForkJoinPool(analytics.getParallelism() > 0
+                ? analytics.getParallelism() : Runtime.getRuntime().availableProcessors());
+        this.cohortCache = Caffeine.newBuilder().maximumSize(analytics.getCohortCacheMaxSize()).build();
+        Gauge.builder("records.analytics.rows", this, service -> service.read(service.store::size))
+                .register(meterRegistry);
+        Gauge.builder("records.analytics.chunks", this, service -> service.read(service.store::chunkCount))
+                .register(meterRegistry);
+        Gauge.builder("records.analytics.sketches", this, service -> service.read(service.sketches::size))
+                .register(meterRegistry);
+        Gauge.builder("records.analytics.sketches.bytes", this, service -> service.read(service.sketches::byteSize))
+                .register(meterRegistry);
+        Gauge.builder("records.analytics.users", this, service -> service.read(service.demographics::size))
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startLoad() {
+        if (!analytics.isEnabled()) {
+            disable();
+            return;
+        }
+        applier = new Thread(this::loadAndApply, "record-analytics-apply");
+        applier.setDaemon(true);
+        applier.start();
+    }
+
+    private void loadAndApply() {
+        if (!load()) {
+            return;
+        }
+        List<Runnable> batch = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(changes.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            changes.drainTo(batch, CHANGE_BATCH_SIZE - 1);
+            apply(batch);
+            batch.clear();
+        }
+    }
+
+    // changes are queued meanwhile, so the store is only touched by this thread until it is marked as loaded
+    private boolean load() {
+        long start = System.nanoTime();
+        try {
+            userDemographicsRepository.streamAll(rs -> {
+                String gender = rs.getString("gender");
+                LocalDate birthDate = rs.getObject("birth_date", LocalDate.class);
+                double weight = rs.getDouble("weight");
+                Double weightOrNull = rs.wasNull() ? null : weight;
+                demographics.put(rs.getLong("id"), gender == null ? null : Gender.valueOf(gender),
+                        birthDate == null ? null : (int) birthDate.toEpochDay(), weightOrNull);
+            });
+            recordReadingRepository.streamAllRows(rs -> {
+                int heartRate = rs.getInt("heart_rate");
+                int heartRateOrNone = rs.wasNull() ? RecordColumnStore.NO_HEART_RATE : heartRate;
+                double sugarLevel = rs.getDouble("sugar_level");
+                short sugarLevelOrNone = rs.wasNull() ? RecordColumnStore.NO_SUGAR_LEVEL : tenths(sugarLevel);
+                store.upsert(rs.getLong("id"), rs.getLong("user_id"),
+                        (int) rs.getObject("date_created", LocalDate.class).toEpochDay(),
+                        heartRateOrNone, sugarLevelOrNone);
+            });
+        } catch (Exception e) {
+            log.error("Could not load the analytics store, analytics are disabled", e);
+            disable();
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            log.info("Loaded {} users and {} records into the analytics store in {} ms, {} changes queued meanwhile",
+                    demographics.size(), store.size(), (System.nanoTime() - start) / 1_000_000, changes.size());
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Aggregate the records matching a query.
+     *
+     * @param query   the filters and the grouping.
+     * @param limit   the maximum number of groups.
+     * @param queryId the id to cancel the query with.
+     * @return the non-empty groups in the order of their key.
+     * @throws ProcessException {@code 503} while the store is not loaded or when the query times out,
+     *                          {@code 409} if the query is cancelled or its id is already running.
+     */
+    public List<RecordAggregateDTO> aggregate(RecordAnalyticsQuery query, int limit, String queryId) {
+        return scan(queryId, query, () -> new RecordAggregation(query)).toResult(limit);
+    }
+
+    /**
+     * Aggregate the records matching a cohort query, from the cache while no record or user has changed.
+     *
+     * @param query   the record filters, the user filters and the grouping.
+     * @param queryId the id to cancel the query with.
+     * @return the non-empty groups, by gender then age band.
+     * @throws ProcessException {@code 503} while the store is not loaded or when the query times out,
+     *                          {@code 409} if the query is cancelled or its id is already running.
+     */
+    public List<RecordAggregateDTO> aggregateCohorts(CohortQuery query, String queryId) {
+        List<Object> key = List.of(query, read(() -> watermark));
+        List<RecordAggregateDTO> cached = cohortCache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        List<RecordAggregateDTO> result = scan(queryId, query.getRecords(),
+                () -> new CohortAggregation(query, demographics)).toResult();
+        cohortCache.put(key, result);
+        return result;
+    }
+
+    /**
+     * Read heart rate and sugar level quantiles from the merged sketches of some users.
+     *
+     * @param userIds   the users, or {@code null} for every user.
+     * @param from      the first day of the range, widened to the start of its sketch bucket.
+     * @param to        the last day of the range, widened to the end of its sketch bucket.
+     * @param quantiles the quantiles, between {@code 0} and {@code 1}.
+     * @return the quantiles.
+     * @throws ProcessException {@code 400} if the range or the quantiles are not valid,
+     *                          {@code 503} while the store is not loaded.
+     */
+    public RecordPercentilesDTO percentiles(Collection<Long> userIds, LocalDate from, LocalDate to, List<Double> quantiles) {
+        if (from.isAfter(to)) {
+            throw new ProcessException("Invalid range for percentiles", HttpStatus.BAD_REQUEST);
+        }
+        if (quantiles.isEmpty() || quantiles.size() > MAX_QUANTILES) {
+            throw new ProcessException("Between 1 and " + MAX_QUANTILES + " quantiles are expected", HttpStatus.BAD_REQUEST);
+        }
+        for (Double quantile : quantiles) {
+            if (quantile == null || !(quantile >= 0 && quantile <= 1)) {
+                throw new ProcessException("Quantiles should be between 0 and 1", HttpStatus.BAD_REQUEST);
+            }
+        }
+        LogLinearScale scale = sketches.getScale();
+        MergedSketch heartRate = new MergedSketch(scale);
+        MergedSketch sugarLevel = new MergedSketch(scale);
+        lock.readLock().lock();
+        try {
+            if (!loaded) {
+                throw new ProcessException("Analytics are not available yet", HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            sketches.merge(userIds, (int) from.toEpochDay(), (int) to.toEpochDay(), heartRate, sugarLevel);
+        } finally {
+            lock.readLock().unlock();
+        }
+        Map<String, Double> heartRates = new LinkedHashMap<>();
+        Map<String, Double> sugarLevels = new LinkedHashMap<>();
+        for (Double quantile : quantiles) {
+            heartRates.put(quantile.toString(), heartRate.quantile(quantile));
+            Double sugarLevelTenths = sugarLevel.quantile(quantile);
+            sugarLevels.put(quantile.toString(), sugarLevelTenths == null ? null : sugarLevelTenths / 10);
+        }
+        return RecordPercentilesDTO.builder()
+                .from(LocalDate.ofEpochDay(sketches.bucketStart((int) from.toEpochDay())))
+                .to(LocalDate.ofEpochDay(sketches.bucketEnd((int) to.toEpochDay())))
+                .relativeError(scale.relativeError())
+                .heartRateCount(heartRate.count())
+                .heartRate(heartRates)
+                .sugarLevelCount(sugarLevel.count())
+                .sugarLevel(sugarLevels)
+                .build();
+    }
+
+    /**
+     * Cancel a running query; its chunks already being scanned are completed first.
+     *
+     * @return whether the query was running.
+     */
+    public boolean cancel(String queryId) {
+        AtomicBoolean cancelled = runningQueries.get(queryId);
+        if (cancelled == null) {
+            return false;
+        }
+        cancelled.set(true);
+        return true;
+    }
+
+    private <T extends PartialAggregate<T>> T scan(String queryId, RecordAnalyticsQuery query, Supplier<T> partials) {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        if (runningQueries.putIfAbsent(queryId, cancelled) != null) {
+            throw new ProcessException("Query " + queryId + " is already running", HttpStatus.CONFLICT);
+        }
+        lock.readLock().lock();
+        try {
+            if (!loaded) {
+                throw new ProcessException("Analytics are not available yet", HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            ForkJoinTask<T> task = pool.submit(new ParallelScan<>(store, query, partials, cancelled));
+            try {
+                return task.get(analytics.getQueryTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                cancelled.set(true);
+                awaitQuietly(task);
+                throw new ProcessException("Query " + queryId + " timed out", HttpStatus.SERVICE_UNAVAILABLE);
+            } catch (InterruptedException e) {
+                cancelled.set(true);
+                awaitQuietly(task);
+                Thread.currentThread().interrupt();
+                throw new ProcessException("Query " + queryId + " was interrupted", HttpStatus.SERVICE_UNAVAILABLE);
+            } catch (CancellationException e) {
+                throw new ProcessException("Query " + queryId + " was cancelled", HttpStatus.CONFLICT);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof CancellationException) {
+                    throw new ProcessException("Query " + queryId + " was cancelled", HttpStatus.CONFLICT);
+                }
+                throw new IllegalStateException("Query " + queryId + " failed", e.getCause());
+            }
+        } finally {
+            lock.readLock().unlock();
+            runningQueries.remove(queryId);
+        }
+    }
+
+    // the read lock must outlive every leaf of a cancelled scan
+    private static void awaitQuietly(ForkJoinTask<?> task) {
+        try {
+            task.join();
+        } catch (RuntimeException ignored) {
+            // cancelled
+        }
+    }
+
+    public void onCreated(Collection<Record> records) {
+        List<Record> created = new ArrayList<>(records);
+        afterCommit(() -> created.forEach(this::upsert));
+    }
+
+    public void onUpdated(Record record) {
+        afterCommit(() -> upsert(record));
+    }
+
+    public void onDeleted(Long id) {
+        afterCommit(() -> store.remove(id));
+    }
+
+    /**
+     * Drop the records of a month whose partition was detached or dropped; rows of that month still in the
+     * default partition are not affected, as the month only gets a partition when it has none there.
+     */
+    public void onRetention(YearMonth month) {
+        int fromDay = (int) month.atDay(1).toEpochDay();
+        int toDay = (int) month.plusMonths(1).atDay(1).toEpochDay();
+        afterCommit(() -> store.removeBetween(fromDay, toDay));
+    }
+
+    public void onUserSaved(User user) {
+        Long id = user.getId();
+        Gender gender = user.getGender();
+        Integer birthDay = user.getBirthDate() == null ? null : (int) user.getBirthDate().toEpochDay();
+        Double weight = user.getWeight();
+        afterCommit(() -> demographics.put(id, gender, birthDay, weight));
+    }
+
+    /**
+     * Drop a deleted user and its records at once, rather than when its purge completes.
+     */
+    public void onUserDeleted(Long userId) {
+        afterCommit(() -> {
+            demographics.remove(userId);
+            store.removeUser(userId);
+        });
+    }
+
+    /**
+     * Drop the records a deleted user may have got stored while its purge ran.
+     */
+    public void onUserPurged(Long userId) {
+        afterCommit(() -> store.removeUser(userId));
+    }
+
+    private void afterCommit(Runnable change) {
+        if (!accepting) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            changes.add(change);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                changes.add(change);
+            }
+        });
+    }
+
+    // only called by the applier thread
+    private void apply(List<Runnable> batch) {
+        lock.writeLock().lock();
+        try {
+            for (Runnable change : batch) {
+                try {
+                    change.run();
+                } catch (RuntimeException e) {
+                    log.error("Could not apply a change to the analytics store", e);
+                }
+            }
+            watermark++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void disable() {
+        accepting = false;
+        changes.clear();
+        lock.writeLock().lock();
+        try {
+            store.clear();
+            sketches.clear();
+            demographics.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void upsert(Record record) {
+        if (record.getUserId() == null) {
+            return;
+        }
+        store.upsert(record.getId(), record.getUserId(), (int) record.getDateCreated().toEpochDay(),
+                record.getHeartRate() == null ? RecordColumnStore.NO_HEART_RATE : record.getHeartRate(),
+                record.getSugarLevel() == null ? RecordColumnStore.NO_SUGAR_LEVEL : tenths(record.getSugarLevel()));
+    }
+
+    private static short tenths(double sugarLevel) {
+        return (short) Math.round(sugarLevel * 10);
+    }
+
+    private int read(IntSupplier supplier) {
+        lock.readLock().lock();
+        try {
+            return supplier.getAsInt();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long read(LongSupplier supplier) {
+        lock.readLock().lock();
+        try {
+            return supplier.getAsLong();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        accepting = false;
+        Thread thread = applier;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,347 @@
+package com.diploma.service;
+
+import com.diploma.config.ApplicationProperties;
+import com.diploma.domain.Record;
+import com.diploma.repository.RecordReadingRepository;
+import com.diploma.service.anomaly.AnomalyRule;
+import com.diploma.service.anomaly.ReadingStatsTable;
+import com.diploma.service.dto.RecordAlertDTO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Service flagging abnormal heart rate and sugar level readings as they are stored.
+ * <p>
+ * Running statistics of each user (count, Welford mean and variance, EWMA) are kept in a {@link ReadingStatsTable}
+ * bounded by {@code application.records.anomalies.max-tracked-users}. Every new reading is evaluated in constant
+ * time, before being added, against the absolute bounds, the z-score of the user and the drift of its EWMA; at most
+ * one alert is raised per reading and metric, and the latest {@code max-alerts} alerts are kept in memory.
+ * <p>
+ * Readings are observed once their transaction commits. An updated or deleted reading is taken back from the count,
+ * mean and variance, though not from the EWMA, and a deleted user is removed, which frees its slot; a user without
+ * readings left is removed too. The statistics are rebuilt from the {@code record} table in one streaming pass after
+ * startup, without raising alerts; changes committed during the rebuild are queued and applied in order after it,
+ * so that live readings are never evaluated against partial statistics.
+ */
+@Service
+public class RecordAnomalyService {
+
+    private static final int HEART_RATE = 0;
+    private static final int SUGAR_LEVEL = ReadingStatsTable.METRIC_STRIDE;
+
+    private final Logger log = LoggerFactory.getLogger(RecordAnomalyService.class);
+    private final ApplicationProperties.Records.Anomalies anomalies;
+    private final RecordReadingRepository recordReadingRepository;
+    private final ReadingStatsTable table;
+    private final RecordAlertDTO[] alerts;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long alertCount;
+    private long untracked;
+    // changes committed during the rebuild, null before and after it
+    private List<Runnable> pending;
+    private boolean rebuilt;
+
+    public RecordAnomalyService(ApplicationProperties applicationProperties, RecordReadingRepository recordReadingRepository,
+                                MeterRegistry meterRegistry) {
+        this.anomalies = applicationProperties.getRecords().getAnomalies();
+        this.recordReadingRepository = recordReadingRepository;
+        this.table = new ReadingStatsTable(anomalies.getMaxTrackedUsers());
+        this.alerts = new RecordAlertDTO[anomalies.getMaxAlerts()];
+        Gauge.builder("records.anomalies.tracked.users", this, service -> service.locked(service.table::size))
+                .register(meterRegistry);
+        Gauge.builder("records.anomalies.untracked.readings", this, service -> service.locked(() -> service.untracked))
+                .register(meterRegistry);
+        Gauge.builder("records.anomalies.alerts", this, service -> service.locked(() -> service.alertCount))
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startRebuild() {
+        if (!anomalies.isEnabled()) {
+            return;
+        }
+        Thread rebuild = new Thread(this::rebuild, "record-anomaly-rebuild");
+        rebuild.setDaemon(true);
+        rebuild.start();
+    }
+
+    // changes committed before the rebuild starts are dropped, since the streamed rows include them
+    private void rebuild() {
+        lock.lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+        long start = System.nanoTime();
+        long[] rows = new long[1];
+        try {
+            recordReadingRepository.streamAll(rs -> {
+                long userId = rs.getLong(1);
+                int heartRate = rs.getInt(2);
+                Integer heartRateOrNull = rs.wasNull() ? null : heartRate;
+                double sugarLevel = rs.getDouble(3);
+                Double sugarLevelOrNull = rs.wasNull() ? null : sugarLevel;
+                observe(userId, null, null, heartRateOrNull, sugarLevelOrNull, false);
+                rows[0]++;
+            });
+            log.info("Rebuilt reading statistics of {} users from {} records in {} ms",
+                    locked(table::size), rows[0], (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            log.error("Could not rebuild reading statistics after {} records", rows[0], e);
+        }
+        lock.lock();
+        try {
+            pending.forEach(Runnable::run);
+            log.debug("Applied {} changes queued during the rebuild", pending.size());
+            pending = null;
+            rebuilt = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Evaluate and add stored records once the surrounding transaction commits.
+     *
+     * @param records the persisted entities.
+     */
+    public void onCreated(Collection<Record> records) {
+        if (!anomalies.isEnabled() || records.isEmpty()) {
+            return;
+        }
+        List<Record> committed = new ArrayList<>(records);
+        afterCommit(() -> observeAll(committed));
+    }
+
+    /**
+     * Replace the previous readings of an updated record by its new ones once the surrounding transaction commits,
+     * without raising alerts.
+     *
+     * @param previousHeartRate  the heart rate before the update.
+     * @param previousSugarLevel the sugar level before the update.
+     * @param record             the updated entity.
+     */
+    public void onUpdated(Integer previousHeartRate, Double previousSugarLevel, Record record) {
+        if (!anomalies.isEnabled() || record.getUserId() == null) {
+            return;
+        }
+        long userId = record.getUserId();
+        Integer heartRate = record.getHeartRate();
+        Double sugarLevel = record.getSugarLevel();
+        afterCommit(() -> {
+            subtract(userId, previousHeartRate, previousSugarLevel);
+            observe(userId, null, null, heartRate, sugarLevel, false);
+        });
+    }
+
+    /**
+     * Take the readings of a deleted record back once the surrounding transaction commits.
+     *
+     * @param record the deleted entity.
+     */
+    public void onDeleted(Record record) {
+        if (!anomalies.isEnabled() || record.getUserId() == null) {
+            return;
+        }
+        long userId = record.getUserId();
+        Integer heartRate = record.getHeartRate();
+        Double sugarLevel = record.getSugarLevel();
+        afterCommit(() -> subtract(userId, heartRate, sugarLevel));
+    }
+
+    /**
+     * Stop tracking a deleted user once the surrounding transaction commits.
+     */
+    public void onUserDeleted(Long userId) {
+        if (!anomalies.isEnabled()) {
+            return;
+        }
+        afterCommit(() -> table.remove(userId));
+    }
+
+    /**
+     * Drop the readings a deleted user may have got stored while its purge ran.
+     */
+    public void onUserPurged(Long userId) {
+        onUserDeleted(userId);
+    }
+
+    /**
+     * Get the latest alerts of a user.
+     *
+     * @param userId the owner of the records.
+     * @param limit  the maximum number of alerts.
+     * @return the alerts, newest first.
+     */
+    public List<RecordAlertDTO> getAlerts(Long userId, int limit) {
+        List<RecordAlertDTO> result = new ArrayList<>();
+        lock.lock();
+        try {
+            long oldest = Math.max(0, alertCount - alerts.length);
+            for (long i = alertCount - 1; i >= oldest && result.size() < limit; i--) {
+                RecordAlertDTO alert = alerts[(int) (i % alerts.length)];
+                if (alert.getUserId().equals(userId)) {
+                    result.add(alert);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    private void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(change);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply(change);
+            }
+        });
+    }
+
+    private void apply(Runnable change) {
+        lock.lock();
+        try {
+            if (rebuilt) {
+                change.run();
+            } else if (pending != null) {
+                pending.add(change);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void subtract(long userId, Integer heartRate, Double sugarLevel) {
+        int slot = table.slot(userId, false);
+        if (slot < 0) {
+            return;
+        }
+        if (heartRate != null && table.count(slot, HEART_RATE) > 0) {
+            table.subtract(slot, HEART_RATE, heartRate);
+        }
+        if (sugarLevel != null && table.count(slot, SUGAR_LEVEL) > 0) {
+            table.subtract(slot, SUGAR_LEVEL, sugarLevel);
+        }
+        if (table.isEmpty(slot)) {
+            table.remove(userId);
+        }
+    }
+
+    private void observeAll(Collection<Record> records) {
+        for (Record record : records) {
+            if (record.getUserId() != null) {
+                observe(record.getUserId(), record.getId(), record.getDateCreated(),
+                        record.getHeartRate(), record.getSugarLevel(), true);
+            }
+        }
+    }
+
+    private void observe(long userId, Long recordId, LocalDate dateCreated, Integer heartRate, Double sugarLevel,
+                         boolean evaluate) {
+        if (heartRate == null && sugarLevel == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            int slot = table.slot(userId, true);
+            if (slot < 0) {
+                untracked++;
+                return;
+            }
+            if (heartRate != null) {
+                observe(slot, HEART_RATE, heartRate, anomalies.getHeartRateMin(), anomalies.getHeartRateMax(),
+                        evaluate, userId, recordId, dateCreated);
+            }
+            if (sugarLevel != null) {
+                observe(slot, SUGAR_LEVEL, sugarLevel, anomalies.getSugarLevelMin(), anomalies.getSugarLevelMax(),
+                        evaluate, userId, recordId, dateCreated);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void observe(int slot, int metric, double value, double min, double max, boolean evaluate,
+                         long userId, Long recordId, LocalDate dateCreated) {
+        if (evaluate) {
+            AnomalyRule rule = evaluate(slot, metric, value, min, max);
+            if (rule != null) {
+                raise(RecordAlertDTO.builder()
+                        .userId(userId)
+                        .recordId(recordId)
+                        .dateCreated(dateCreated)
+                        .metric(metric == HEART_RATE ? "heartRate" : "sugarLevel")
+                        .value(value)
+                        .rule(rule)
+                        .count(table.count(slot, metric))
+                        .mean(table.mean(slot, metric))
+                        .standardDeviation(table.standardDeviation(slot, metric))
+                        .ewma(table.ewma(slot, metric))
+                        .detectedAt(Instant.now())
+                        .build());
+            }
+        }
+        table.add(slot, metric, value, anomalies.getEwmaAlpha());
+    }
+
+    private AnomalyRule evaluate(int slot, int metric, double value, double min, double max) {
+        if (value < min || value > max) {
+            return AnomalyRule.THRESHOLD;
+        }
+        if (table.count(slot, metric) < anomalies.getMinSamples()) {
+            return null;
+        }
+        double mean = table.mean(slot, metric);
+        double deviation = table.standardDeviation(slot, metric);
+        if (deviation == 0) {
+            return null;
+        }
+        if (Math.abs(value - mean) / deviation >= anomalies.getZScoreThreshold()) {
+            return AnomalyRule.Z_SCORE;
+        }
+        // edge-triggered, so a lasting drift raises one alert
+        double ewma = table.ewma(slot, metric);
+        double nextEwma = ewma + anomalies.getEwmaAlpha() * (value - ewma);
+        if (Math.abs(nextEwma - mean) / deviation >= anomalies.getDriftThreshold()
+                && Math.abs(ewma - mean) / deviation < anomalies.getDriftThreshold()) {
+            return AnomalyRule.DRIFT;
+        }
+        return null;
+    }
+
+    private void raise(RecordAlertDTO alert) {
+        log.debug("Abnormal reading : {}", alert);
+        alerts[(int) (alertCount % alerts.length)] = alert;
+        alertCount++;
+    }
+
+    private <T extends Number> double locked(Supplier<T> supplier) {
+        lock.lock();
+        try {
+            return supplier.get().doubleValue();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
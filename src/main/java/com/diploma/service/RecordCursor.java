@@ -0,0 +1,36 @@
+package com.diploma.service;
+
+import com.diploma.web.rest.errors.ProcessException;
+import lombok.Value;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+/**
+ * Position of a record in the {@code (date_created, id)} ordering, encoded as an opaque continuation token.
+ */
+@Value
+public class RecordCursor {
+
+    LocalDate dateCreated;
+    Long id;
+
+    public String encode() {
+        String raw = dateCreated.toEpochDay() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static RecordCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            LocalDate dateCreated = LocalDate.ofEpochDay(Long.parseLong(raw.substring(0, separator)));
+            Long id = Long.parseLong(raw.substring(separator + 1));
+            return new RecordCursor(dateCreated, id);
+        } catch (RuntimeException e) {
+            throw new ProcessException("Invalid cursor: " + token, HttpStatus.BAD_REQUEST);
+        }
+    }
+}
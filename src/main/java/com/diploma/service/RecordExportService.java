@@ -0,0 +1,139 @@
+package com.diploma.service;
+
+import com.diploma.config.ApplicationProperties;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * Service streaming the full record history of a user.
+ * <p>
+ * Rows are read through a forward-only server-side cursor and written out as they arrive, without
+ * hydrating entities, so memory use does not depend on the size of the history.
+ */
+@Service
+public class RecordExportService {
+
+    private static final String EXPORT_SQL = "SELECT id, heart_rate, sugar_level, date_created, date_updated " +
+            "FROM record WHERE user_id = ? AND date_created >= ? AND date_created <= ? ORDER BY date_created, id";
+
+    /**
+     * Bounds of an open export range, so that the query keeps one shape; an export of the whole history reads every
+     * partition anyway.
+     */
+    private static final LocalDate FIRST_DAY = LocalDate.of(1, 1, 1);
+    private static final LocalDate LAST_DAY = LocalDate.of(9999, 12, 31);
+
+    private final Logger log = LoggerFactory.getLogger(RecordExportService.class);
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public RecordExportService(DataSource dataSource, ObjectMapper objectMapper, ApplicationProperties applicationProperties) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(applicationProperties.getRecords().getExportFetchSize());
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Write the records of a user created within a range, ordered by {@code (dateCreated, id)}.
+     * <p>
+     * The read-only transaction is what lets the PostgreSQL driver use a cursor instead of buffering
+     * the whole result set.
+     *
+     * @param userId the owner of the records.
+     * @param from   the first creation day to export, or {@code null} for no lower bound.
+     * @param to     the last creation day to export, or {@code null} for no upper bound.
+     * @param format the output format.
+     * @param out    the stream to write to; it is flushed but not closed.
+     */
+    @Transactional(readOnly = true)
+    public void export(Long userId, LocalDate from, LocalDate to, RecordFileFormat format, OutputStream out) throws IOException {
+        log.debug("Request to export Records of user {} as {}", userId, format);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        JsonGenerator generator = null;
+        RowCallbackHandler handler;
+        if (format == RecordFileFormat.CSV) {
+            writer.write(RecordFileFormat.CSV_HEADER);
+            writer.write('\n');
+            handler = rs -> writeCsv(rs, writer);
+        } else {
+            JsonGenerator json = objectMapper.getFactory().createGenerator(writer);
+            json.setRootValueSeparator(null);
+            handler = rs -> writeJson(rs, json);
+            generator = json;
+        }
+        try {
+            jdbcTemplate.query(EXPORT_SQL, handler, userId,
+                    from == null ? FIRST_DAY : from,
+                    to == null ? LAST_DAY : to);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (generator != null) {
+            generator.flush();
+        }
+        writer.flush();
+    }
+
+    private static void writeCsv(ResultSet rs, Writer writer) throws SQLException {
+        try {
+            writer.write(Long.toString(rs.getLong("id")));
+            writer.write(',');
+            writeNullable(writer, rs.getObject("heart_rate", Integer.class));
+            writer.write(',');
+            BigDecimal sugarLevel = rs.getBigDecimal("sugar_level");
+            writeNullable(writer, sugarLevel == null ? null : sugarLevel.toPlainString());
+            writer.write(',');
+            writer.write(rs.getObject("date_created", LocalDate.class).toString());
+            writer.write(',');
+            writer.write(rs.getObject("date_updated", LocalDate.class).toString());
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeNullable(Writer writer, Object value) throws IOException {
+        if (value != null) {
+            writer.write(value.toString());
+        }
+    }
+
+    private static void writeJson(ResultSet rs, JsonGenerator generator) throws SQLException {
+        try {
+            generator.writeStartObject();
+            generator.writeNumberField("id", rs.getLong("id"));
+            Integer heartRate = rs.getObject("heart_rate", Integer.class);
+            if (heartRate == null) {
+                generator.writeNullField("heartRate");
+            } else {
+                generator.writeNumberField("heartRate", heartRate);
+            }
+            generator.writeNumberField("sugarLevel", rs.getBigDecimal("sugar_level"));
+            generator.writeStringField("dateCreated", rs.getObject("date_created", LocalDate.class).toString());
+            generator.writeStringField("dateUpdated", rs.getObject("date_updated", LocalDate.class).toString());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.diploma.service;
+
+/**
+ * File formats of record exports and imports.
+ */
+public enum RecordFileFormat {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    /**
+     * Header line of CSV files; imports accept these columns in any order.
+     */
+    public static final String CSV_HEADER = "id,heart_rate,sugar_level,date_created,date_updated";
+
+    private final String contentType;
+    private final String extension;
+
+    RecordFileFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,260 @@
+package com.diploma.service;
+
+import com.diploma.config.ApplicationProperties;
+import com.diploma.domain.Record;
+import com.diploma.service.dto.RecordBatchItemDTO;
+import com.diploma.service.dto.RecordBatchResultDTO;
+import com.diploma.service.dto.RecordImportErrorDTO;
+import com.diploma.service.dto.RecordImportReportDTO;
+import com.diploma.web.rest.errors.ProcessException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service loading records from an uploaded CSV or NDJSON stream.
+ * <p>
+ * The stream is parsed line by line and written in fixed-size batches, each in its own transaction
+ * through {@link RecordService#createBatch(List, Long)}. Nothing is read ahead of the batch being
+ * written, so memory is bounded by the batch size and the upload is only consumed as fast as
+ * PostgreSQL accepts the rows. A batch whose transaction fails rejects all of its lines with the cause and the
+ * import goes on; the report gives the last line of the last committed batch. Lines longer than
+ * {@code application.records.import-max-line-length} are not buffered: the rest of such a line is skipped and it is
+ * rejected. Record ids in the file are ignored; new ids are assigned.
+ */
+@Service
+@RequiredArgsConstructor
+public class RecordImportService {
+
+    private final Logger log = LoggerFactory.getLogger(RecordImportService.class);
+    private final RecordService recordService;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final ApplicationProperties applicationProperties;
+
+    /**
+     * Import records for a user.
+     *
+     * @param userId the owner of the imported records.
+     * @param in     the uncompressed upload.
+     * @param format the format of the upload.
+     * @return the counts of imported and rejected lines, with the first errors.
+     */
+    public RecordImportReportDTO importRecords(Long userId, InputStream in, RecordFileFormat format) throws IOException {
+        log.debug("Request to import {} Records of user {}", format, userId);
+        int batchSize = applicationProperties.getRecords().getImportBatchSize();
+        RecordImportReportDTO report = new RecordImportReportDTO();
+        List<Record> batch = new ArrayList<>(batchSize);
+        List<Long> batchLines = new ArrayList<>(batchSize);
+        Map<String, Integer> csvColumns = null;
+
+        int maxLineLength = applicationProperties.getRecords().getImportMaxLineLength();
+        LineReader reader = new LineReader(new InputStreamReader(in, StandardCharsets.UTF_8), maxLineLength);
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (!reader.isTooLong() && line.isBlank()) {
+                continue;
+            }
+            if (format == RecordFileFormat.CSV && csvColumns == null) {
+                if (reader.isTooLong()) {
+                    throw new ProcessException("CSV header is longer than " + maxLineLength + " characters",
+                            HttpStatus.BAD_REQUEST);
+                }
+                csvColumns = parseCsvHeader(line);
+                continue;
+            }
+            report.setProcessed(report.getProcessed() + 1);
+            if (reader.isTooLong()) {
+                reject(report, lineNumber, List.of("Line longer than " + maxLineLength + " characters"));
+                continue;
+            }
+            Record record;
+            try {
+                record = format == RecordFileFormat.CSV ? parseCsv(line, csvColumns) : parseJson(line);
+            } catch (IllegalArgumentException | DateTimeParseException | JsonProcessingException e) {
+                reject(report, lineNumber, List.of("Malformed line: " + e.getMessage()));
+                continue;
+            }
+            batch.add(record);
+            batchLines.add(lineNumber);
+            if (batch.size() == batchSize) {
+                writeBatch(userId, batch, batchLines, report);
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(userId, batch, batchLines, report);
+        }
+        return report;
+    }
+
+    // a batch that fails as a whole is reported line by line, so the report of the committed batches is kept
+    private void writeBatch(Long userId, List<Record> batch, List<Long> batchLines, RecordImportReportDTO report) {
+        try {
+            RecordBatchResultDTO result = recordService.createBatch(batch, userId);
+            for (RecordBatchItemDTO item : result.getItems()) {
+                if (item.getStatus() == RecordBatchItemDTO.Status.REJECTED) {
+                    reject(report, batchLines.get(item.getIndex()), item.getErrors());
+                }
+            }
+            report.setImported(report.getImported() + result.getCreated());
+            report.setLastCommittedLine(batchLines.get(batchLines.size() - 1));
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Could not import a batch of {} Records of user {} ending at line {}", batch.size(), userId,
+                    batchLines.get(batchLines.size() - 1), e);
+            List<String> errors = List.of("Batch not stored: "
+                    + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+            for (Long line : batchLines) {
+                reject(report, line, errors);
+            }
+        }
+        report.setBatches(report.getBatches() + 1);
+        // the persistence context outlives the batch transaction when it is bound to the request
+        entityManager.clear();
+        batch.clear();
+        batchLines.clear();
+    }
+
+    private void reject(RecordImportReportDTO report, long line, List<String> errors) {
+        report.setRejected(report.getRejected() + 1);
+        if (report.getErrors().size() < applicationProperties.getRecords().getImportMaxReportedErrors()) {
+            report.getErrors().add(new RecordImportErrorDTO(line, errors));
+        } else {
+            report.setErrorsTruncated(true);
+        }
+    }
+
+    private static Map<String, Integer> parseCsvHeader(String line) {
+        Map<String, Integer> columns = new HashMap<>();
+        String[] names = line.split(",", -1);
+        for (int i = 0; i < names.length; i++) {
+            columns.put(names[i].trim().toLowerCase(), i);
+        }
+        if (!columns.containsKey("date_created")) {
+            throw new ProcessException("CSV header should contain the columns of " + RecordFileFormat.CSV_HEADER,
+                    HttpStatus.BAD_REQUEST);
+        }
+        return columns;
+    }
+
+    private static Record parseCsv(String line, Map<String, Integer> columns) {
+        String[] values = line.split(",", -1);
+        LocalDate dateCreated = LocalDate.parse(value(values, columns, "date_created"));
+        String dateUpdated = value(values, columns, "date_updated");
+        String heartRate = value(values, columns, "heart_rate");
+        String sugarLevel = value(values, columns, "sugar_level");
+        return Record.builder()
+                .heartRate(heartRate.isEmpty() ? null : Integer.valueOf(heartRate))
+                .sugarLevel(sugarLevel.isEmpty() ? null : Double.valueOf(sugarLevel))
+                .dateCreated(dateCreated)
+                .dateUpdated(dateUpdated.isEmpty() ? dateCreated : LocalDate.parse(dateUpdated))
+                .build();
+    }
+
+    private static String value(String[] values, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null) {
+            return "";
+        }
+        if (index >= values.length) {
+            throw new IllegalArgumentException("missing " + column);
+        }
+        return values[index].trim();
+    }
+
+    private Record parseJson(String line) throws JsonProcessingException {
+        Record record = objectMapper.readValue(line, Record.class);
+        record.setId(null);
+        if (record.getDateUpdated() == null) {
+            record.setDateUpdated(record.getDateCreated());
+        }
+        return record;
+    }
+
+    /**
+     * Reads lines ended by {@code \n} or {@code \r\n} from its own buffer, keeping at most a maximum length of each:
+     * the rest of a longer line is skipped, and {@link #isTooLong()} is set until the next line.
+     */
+    private static final class LineReader {
+        private final Reader reader;
+        private final int maxLength;
+        private final char[] buffer = new char[64 * 1024];
+        private final StringBuilder line = new StringBuilder();
+        private int position;
+        private int limit;
+        private boolean tooLong;
+
+        private LineReader(Reader reader, int maxLength) {
+            this.reader = reader;
+            this.maxLength = maxLength;
+        }
+
+        /**
+         * @return the line without its terminator, truncated if it is too long, or {@code null} at the end of input.
+         */
+        private String readLine() throws IOException {
+            line.setLength(0);
+            tooLong = false;
+            long length = 0;
+            while (true) {
+                if (position == limit) {
+                    int read = reader.read(buffer);
+                    if (read == -1) {
+                        if (length == 0) {
+                            return null;
+                        }
+                        break;
+                    }
+                    position = 0;
+                    limit = read;
+                }
+                int end = position;
+                while (end < limit && buffer[end] != '\n') {
+                    end++;
+                }
+                line.append(buffer, position, (int) Math.min(end - position, Math.max(0, maxLength + 1 - length)));
+                length += end - position;
+                position = end;
+                if (end < limit) {
+                    position++;
+                    break;
+                }
+            }
+            // the whole line is buffered up to this length, so its last character is known
+            if (length > 0 && length <= maxLength + 1 && line.charAt(line.length() - 1) == '\r') {
+                line.setLength(line.length() - 1);
+                length--;
+            }
+            if (length > maxLength) {
+                tooLong = true;
+                line.setLength(maxLength);
+            }
+            return line.toString();
+        }
+
+        private boolean isTooLong() {
+            return tooLong;
+        }
+    }
+}
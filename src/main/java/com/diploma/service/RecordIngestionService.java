@@ -0,0 +1,183 @@
+package com.diploma.service;
+
+import com.diploma.config.ApplicationProperties;
+import com.diploma.domain.Record;
+import com.diploma.repository.RecordIngestionCheckpointRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.validation.ConstraintViolationException;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Service implementing the write-behind ingestion mode of single records.
+ * <p>
+ * When {@code application.records.ingestion.mode} is {@code WRITE_BEHIND}, records are appended to a
+ * {@link RecordWriteAheadLog} and a background drainer stores them in large batches through
+ * {@link RecordService#createLogged}, so request latency no longer depends on the database commit latency.
+ * The database keeps the position of the log in the same transaction as the records, so delivery is exactly once:
+ * a batch replayed after a crash is skipped.
+ * <p>
+ * A batch rejected by the database, e.g. because its owner was purged meanwhile, is stored again record by record;
+ * the records still rejected are moved to the dead-letter file of the log and counted by
+ * {@code records.ingestion.dead.letters}, and the position moves past them. Other failures are retried from the
+ * same position.
+ */
+@Service
+public class RecordIngestionService {
+
+    private final Logger log = LoggerFactory.getLogger(RecordIngestionService.class);
+    private final ApplicationProperties applicationProperties;
+    private final RecordService recordService;
+    private final RecordIngestionCheckpointRepository recordIngestionCheckpointRepository;
+    private final Counter deadLetters;
+
+    private RecordWriteAheadLog writeAheadLog;
+    private Thread drainer;
+    private volatile boolean running;
+
+    public RecordIngestionService(ApplicationProperties applicationProperties, RecordService recordService,
+                                  RecordIngestionCheckpointRepository recordIngestionCheckpointRepository,
+                                  MeterRegistry meterRegistry) {
+        this.applicationProperties = applicationProperties;
+        this.recordService = recordService;
+        this.recordIngestionCheckpointRepository = recordIngestionCheckpointRepository;
+        this.deadLetters = Counter.builder("records.ingestion.dead.letters")
+                .description("Logged records the database rejected, moved to the dead-letter file")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!isWriteBehind()) {
+            return;
+        }
+        ApplicationProperties.Records.Ingestion ingestion = applicationProperties.getRecords().getIngestion();
+        writeAheadLog = new RecordWriteAheadLog(Paths.get(ingestion.getDirectory()), ingestion.getSegmentSize());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startDrainer() {
+        if (writeAheadLog == null) {
+            return;
+        }
+        running = true;
+        drainer = new Thread(this::drain, "record-wal-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * @return whether records are ingested through the write-ahead log.
+     */
+    public boolean isWriteBehind() {
+        return applicationProperties.getRecords().getIngestion().getMode() == ApplicationProperties.Records.IngestionMode.WRITE_BEHIND;
+    }
+
+    /**
+     * Durably log a record to be stored later.
+     *
+     * @param record the validated record, with its owner set.
+     * @throws IOException if the log cannot be written.
+     */
+    public void ingest(Record record) throws IOException {
+        log.debug("Request to log Record : {}", record);
+        writeAheadLog.append(record);
+    }
+
+    private void drain() {
+        ApplicationProperties.Records.Ingestion ingestion = applicationProperties.getRecords().getIngestion();
+        while (running) {
+            try {
+                RecordWriteAheadLog.Batch batch = writeAheadLog.read(ingestion.getDrainBatchSize());
+                if (batch.isEmpty()) {
+                    Thread.sleep(ingestion.getDrainInterval());
+                    continue;
+                }
+                try {
+                    recordService.createLogged(writeAheadLog.getId(), batch);
+                } catch (RuntimeException e) {
+                    if (!isRejection(e)) {
+                        throw e;
+                    }
+                    log.warn("Logged batch of {} records rejected, storing them one by one", batch.getRecords().size(), e);
+                    drainOneByOne(batch);
+                }
+                writeAheadLog.checkpoint(batch.getEnd());
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                log.error("Could not store logged records, retrying", e);
+                try {
+                    Thread.sleep(ingestion.getDrainInterval());
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // a failure that is not a rejection is thrown, and the batch is retried without the records stored meanwhile
+    private void drainOneByOne(RecordWriteAheadLog.Batch batch) throws IOException {
+        List<Record> records = batch.getRecords();
+        for (int i = 0; i < records.size(); i++) {
+            RecordWriteAheadLog.Position start = i == 0 ? batch.getStart() : batch.after(i - 1);
+            RecordWriteAheadLog.Batch single = new RecordWriteAheadLog.Batch(List.of(records.get(i)), start, batch.after(i));
+            try {
+                recordService.createLogged(writeAheadLog.getId(), single);
+            } catch (RuntimeException e) {
+                if (!isRejection(e)) {
+                    throw e;
+                }
+                log.error("Logged record {} rejected, moving it to the dead-letter file", records.get(i), e);
+                writeAheadLog.deadLetter(records.get(i));
+                recordIngestionCheckpointRepository.save(writeAheadLog.getId(), single.getEnd());
+                deadLetters.increment();
+            }
+        }
+    }
+
+    /**
+     * @return whether the database or the validation rejected the records themselves, so that retrying them as they
+     * are cannot succeed: integrity constraint and data exception SQL states, or constraint violations.
+     */
+    private static boolean isRejection(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataIntegrityViolationException || cause instanceof ConstraintViolationException) {
+                return true;
+            }
+            if (cause instanceof SQLException) {
+                String sqlState = ((SQLException) cause).getSQLState();
+                if (sqlState != null && (sqlState.startsWith("23") || sqlState.startsWith("22"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stop the drainer once its current batch is stored; records still in the log are stored on the next start.
+     */
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        running = false;
+        if (drainer != null) {
+            drainer.join();
+        }
+        if (writeAheadLog != null) {
+            writeAheadLog.close();
+        }
+    }
+}
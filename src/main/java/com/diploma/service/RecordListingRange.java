@@ -0,0 +1,37 @@
+package com.diploma.service;
+
+import com.diploma.web.rest.errors.ProcessException;
+import lombok.Value;
+import org.springframework.http.HttpStatus;
+
+import java.time.LocalDate;
+
+/**
+ * The creation days a record listing reads.
+ * <p>
+ * A listing always has both bounds, so it only reaches the monthly partitions of its range: an open {@code to}
+ * is today, and an open {@code from} is {@code application.records.listing-default-months} months before
+ * {@code to}.
+ */
+@Value
+public class RecordListingRange {
+
+    LocalDate from;
+    LocalDate to;
+
+    /**
+     * @param from          the first creation day asked for, or {@code null}.
+     * @param to            the last creation day asked for, or {@code null}.
+     * @param defaultMonths the number of months read back from {@code to} when {@code from} is {@code null}.
+     * @return the range.
+     * @throws ProcessException {@code 400} if the range is empty.
+     */
+    public static RecordListingRange of(LocalDate from, LocalDate to, int defaultMonths) {
+        LocalDate last = to == null ? LocalDate.now() : to;
+        LocalDate first = from == null ? last.minusMonths(defaultMonths) : from;
+        if (first.isAfter(last)) {
+            throw new ProcessException("Invalid range for records", HttpStatus.BAD_REQUEST);
+        }
+        return new RecordListingRange(first, last);
+    }
+}
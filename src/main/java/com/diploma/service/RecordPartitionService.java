@@ -0,0 +1,91 @@
+package com.diploma.service;
+
+import com.diploma.config.ApplicationProperties;
+import com.diploma.domain.Record;
+import com.diploma.repository.RecordPartitionRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Service maintaining the monthly partitions of the {@code record} table.
+ * <p>
+ * Partitions are created {@code months-ahead} months in advance so inserts never fall into the default
+ * partition, and partitions older than the retention are detached or dropped. A detached partition loses its
+ * user foreign key so it does not block user purges. Each partition is created, detached or dropped in its own
+ * transaction so one failure does not block the rest of the maintenance.
+ */
+@Service
+@RequiredArgsConstructor
+public class RecordPartitionService {
+
+    private final Logger log = LoggerFactory.getLogger(RecordPartitionService.class);
+    private final RecordPartitionRepository recordPartitionRepository;
+    private final ApplicationProperties applicationProperties;
+    private final EntityManagerFactory entityManagerFactory;
+    private final RecordAnalyticsService recordAnalyticsService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${application.records.partitions.cron:0 0 3 * * *}")
+    public void maintain() {
+        ApplicationProperties.Records.Partitions partitions = applicationProperties.getRecords().getPartitions();
+        if (!partitions.isEnabled()) {
+            return;
+        }
+        try {
+            if (!recordPartitionRepository.isPartitioned()) {
+                log.warn("Table record is not partitioned, skipping partition maintenance");
+                return;
+            }
+            YearMonth current = YearMonth.now();
+            createAhead(current, partitions.getMonthsAhead());
+            if (partitions.getRetentionMonths() > 0) {
+                applyRetention(current.minusMonths(partitions.getRetentionMonths()), partitions.getRetentionAction());
+            }
+        } catch (DataAccessException e) {
+            log.error("Record partition maintenance failed", e);
+        }
+    }
+
+    private void createAhead(YearMonth current, int monthsAhead) {
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = current.plusMonths(i);
+            try {
+                recordPartitionRepository.create(month);
+            } catch (DataAccessException e) {
+                // typically rows of that month already sit in the default partition
+                log.error("Could not create partition {}", RecordPartitionRepository.name(month), e);
+            }
+        }
+    }
+
+    private void applyRetention(YearMonth oldestKept, ApplicationProperties.Records.RetentionAction action) {
+        List<YearMonth> months = recordPartitionRepository.findMonths();
+        for (YearMonth month : months) {
+            if (!month.isBefore(oldestKept)) {
+                break;
+            }
+            log.info("Applying retention to partition {} : {}", RecordPartitionRepository.name(month), action);
+            recordPartitionRepository.detach(month);
+            if (action == ApplicationProperties.Records.RetentionAction.DROP) {
+                recordPartitionRepository.drop(month);
+            }
+            // the rows left the table behind Hibernate's back
+            entityManagerFactory.getCache().evict(Record.class);
+            recordAnalyticsService.onRetention(month);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.diploma.service;
+
+import com.diploma.domain.Record;
+import com.diploma.domain.RecordRollup;
+import com.diploma.domain.enumeration.RollupBucket;
+import com.diploma.repository.RecordRollupRepository;
+import com.diploma.service.dto.RecordStatsDTO;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Service maintaining the daily, weekly and monthly {@link RecordRollup}s of records.
+ * <p>
+ * Inserts are folded into the stored buckets incrementally. Updates and deletions rebuild the affected
+ * buckets from the {@code record} table, which only touches the rows of one user in one month at most.
+ */
+@Service
+@Transactional
+@RequiredArgsConstructor
+public class RecordRollupService {
+
+    private final Logger log = LoggerFactory.getLogger(RecordRollupService.class);
+    private final RecordRollupRepository recordRollupRepository;
+
+    /**
+     * Add newly created records to their buckets.
+     *
+     * @param records the persisted records.
+     */
+    public void onCreated(Collection<Record> records) {
+        Map<List<Object>, RecordRollup> deltas = new LinkedHashMap<>();
+        for (Record record : records) {
+            if (record.getUserId() == null) {
+                continue;
+            }
+            for (RollupBucket bucket : RollupBucket.values()) {
+                LocalDate bucketStart = bucket.start(record.getDateCreated());
+                deltas.computeIfAbsent(List.of(record.getUserId(), bucket, bucketStart), key -> RecordRollup.builder()
+                                .userId(record.getUserId())
+                                .bucket(bucket)
+                                .bucketStart(bucketStart)
+                                .build())
+                        .add(record);
+            }
+        }
+        if (!deltas.isEmpty()) {
+            log.debug("Request to merge {} Record rollups", deltas.size());
+            recordRollupRepository.merge(deltas.values());
+        }
+    }
+
+    /**
+     * Rebuild every bucket containing one of the given days.
+     * <p>
+     * Pending JPA changes to the {@code record} table must be flushed before calling this method.
+     *
+     * @param userId the owner of the records.
+     * @param dates  the creation dates of the changed records, before and after the change.
+     */
+    public void refresh(Long userId, LocalDate... dates) {
+        if (userId == null) {
+            return;
+        }
+        log.debug("Request to refresh Record rollups of user {} for {}", userId, dates);
+        for (RollupBucket bucket : RollupBucket.values()) {
+            Arrays.stream(dates)
+                    .filter(Objects::nonNull)
+                    .map(bucket::start)
+                    .distinct()
+                    .forEach(bucketStart -> recordRollupRepository.recompute(userId, bucket, bucketStart));
+        }
+    }
+
+    /**
+     * Get pre-aggregated statistics of a user.
+     *
+     * @param userId the owner of the records.
+     * @param bucket the bucket granularity.
+     * @param from   the first day of the range.
+     * @param to     the last day of the range.
+     * @return one entry per non-empty bucket overlapping the range, ordered by time.
+     */
+    @Transactional(readOnly = true)
+    public List<RecordStatsDTO> getStats(Long userId, RollupBucket bucket, LocalDate from, LocalDate to) {
+        log.debug("Request to get {} Record stats of user {} from {} to {}", bucket, userId, from, to);
+        return recordRollupRepository.findAll(userId, bucket, bucket.start(from), to).stream()
+                .map(RecordStatsDTO::of)
+                .collect(Collectors.toList());
+    }
+}
@@ -1,17 +1,34 @@
 package com.diploma.service;
 
+import com.diploma.config.ApplicationProperties;
 import com.diploma.domain.Record;
+import com.diploma.repository.RecordIngestionCheckpointRepository;
 import com.diploma.repository.RecordRepository;
+import com.diploma.repository.RecordUpdateRepository;
+import com.diploma.service.dto.RecordBatchItemDTO;
+import com.diploma.service.dto.RecordBatchResultDTO;
+import com.diploma.service.dto.RecordVersionDTO;
+import com.diploma.service.dto.RecordsCursorPageDTO;
+import com.diploma.service.specification.RecordSpecification;
+import com.diploma.web.rest.errors.ProcessException;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Service Implementation for managing {@link Record}.
@@ -20,9 +37,17 @@ import java.util.Optional;
 @Transactional
 @RequiredArgsConstructor
 public class RecordService {
+
     private final Logger log = LoggerFactory.getLogger(RecordService.class);
     private final RecordRepository recordRepository;
+    private final RecordUpdateRepository recordUpdateRepository;
+    private final RecordIngestionCheckpointRepository recordIngestionCheckpointRepository;
     private final UserService userService;
+    private final RecordRollupService recordRollupService;
+    private final RecordAnomalyService recordAnomalyService;
+    private final RecordAnalyticsService recordAnalyticsService;
+    private final ApplicationProperties applicationProperties;
+    private final Validator validator;
 
     /**
      * Save a record.
@@ -32,43 +57,184 @@ public class RecordService {
      */
     public Record create(final Record record) {
         log.debug("Request to save Record : {}", record);
-        return recordRepository.save(record);
+        Record result = recordRepository.save(record);
+        recordRollupService.onCreated(List.of(result));
+        recordAnomalyService.onCreated(List.of(result));
+        recordAnalyticsService.onCreated(List.of(result));
+        return result;
+    }
+
+    /**
+     * Validate and save a batch of records owned by one user.
+     * <p>
+     * Every item is validated up front; the valid ones are persisted in a single transaction so that
+     * Hibernate can group them into JDBC insert batches.
+     *
+     * @param records the entities to save.
+     * @param userId  the id of the owner of the records.
+     * @return the per-item outcome, in the order of {@code records}.
+     */
+    public RecordBatchResultDTO createBatch(final List<Record> records, final Long userId) {
+        log.debug("Request to save batch of {} Records", records.size());
+        List<RecordBatchItemDTO> items = new ArrayList<>(records.size());
+        List<Record> accepted = new ArrayList<>(records.size());
+        List<Integer> acceptedIndexes = new ArrayList<>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            Record record = records.get(i);
+            List<String> errors = validate(record);
+            if (errors.isEmpty()) {
+                record.setUserId(userId);
+                accepted.add(record);
+                acceptedIndexes.add(i);
+            }
+            items.add(errors.isEmpty() ? null : RecordBatchItemDTO.rejected(i, errors));
+        }
+
+        List<Record> saved = recordRepository.saveAll(accepted);
+        recordRollupService.onCreated(saved);
+        recordAnomalyService.onCreated(saved);
+        recordAnalyticsService.onCreated(saved);
+        for (int i = 0; i < saved.size(); i++) {
+            int index = acceptedIndexes.get(i);
+            items.set(index, RecordBatchItemDTO.created(index, saved.get(i).getId()));
+        }
+        return new RecordBatchResultDTO(saved.size(), records.size() - saved.size(), items);
+    }
+
+    /**
+     * Save records of any owners in one transaction, without validation.
+     *
+     * @param records the validated entities to save, with their owner set.
+     * @return the persisted entities.
+     */
+    public List<Record> createAll(final List<Record> records) {
+        log.debug("Request to save {} Records", records.size());
+        List<Record> saved = recordRepository.saveAll(records);
+        recordRollupService.onCreated(saved);
+        recordAnomalyService.onCreated(saved);
+        recordAnalyticsService.onCreated(saved);
+        return saved;
+    }
+
+    /**
+     * Save records read from a write-ahead log and move the position stored for the log in the same transaction.
+     * <p>
+     * The stored position is locked first: records before it were stored by an earlier run whose local checkpoint
+     * was lost, and are skipped, so every logged record is stored exactly once.
+     *
+     * @param logId the id of the log.
+     * @param batch consecutive validated records of the log, with their owner set.
+     * @return the number of records saved.
+     */
+    public int createLogged(final String logId, final RecordWriteAheadLog.Batch batch) {
+        int stored = recordIngestionCheckpointRepository.lock(logId)
+                .filter(position -> position.compareTo(batch.getStart()) > 0)
+                .map(position -> position.compareTo(batch.getEnd()) >= 0
+                        ? batch.getRecords().size()
+                        : position.getEntry() - batch.getStart().getEntry())
+                .orElse(0);
+        if (stored > 0) {
+            log.info("Skipping {} logged Records already stored", stored);
+        }
+        List<Record> records = batch.getRecords().subList(stored, batch.getRecords().size());
+        if (!records.isEmpty()) {
+            createAll(records);
+        }
+        recordIngestionCheckpointRepository.save(logId, batch.getEnd());
+        return records.size();
+    }
+
+    private List<String> validate(final Record record) {
+        if (record == null) {
+            return List.of("Record must not be null");
+        }
+        if (record.getId() != null) {
+            return List.of("A new record cannot already have an ID");
+        }
+        Set<ConstraintViolation<Record>> violations = validator.validate(record);
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .collect(Collectors.toList());
     }
 
     public boolean existsById(final Long id) {
-        return recordRepository.existsById(id);
+        return recordRepository.existsByKey(id);
     }
 
     /**
-     * Update a record.
+     * Update a record in one conditional statement, if it still has the version the caller has read.
      *
-     * @param record the entity to save.
-     * @return the persisted entity.
+     * @param record  the entity to save.
+     * @param version the version the caller has read.
+     * @return the persisted entity, with its new version.
+     * @throws ProcessException {@code 404} if the record does not exist, {@code 409} if it has another version.
      */
-    public Record update(final Record record) {
-        Record updated = Record.builder()
-                .id(record.getId())
-                .heartRate(record.getHeartRate())
-                .sugarLevel(record.getSugarLevel())
-                .dateCreated(record.getDateCreated())
-                .dateUpdated(record.getDateUpdated())
-                .build();
-        log.debug("Request to save Record : {}", updated);
-        return recordRepository.save(updated);
+    public Record update(final Record record, final Long version) {
+        log.debug("Request to update Record : {} at version {}", record, version);
+        RecordUpdateRepository.Result result = recordUpdateRepository.update(record, version).orElseThrow(() ->
+                recordRepository.existsByKey(record.getId())
+                        ? new ProcessException("Record " + record.getId() + " was modified concurrently", HttpStatus.CONFLICT)
+                        : new ProcessException("Record " + record.getId() + " not found", HttpStatus.NOT_FOUND));
+        Record updated = result.getRecord();
+        recordRollupService.refresh(updated.getUserId(), result.getPreviousDateCreated(), updated.getDateCreated());
+        recordAnomalyService.onUpdated(result.getPreviousHeartRate(), result.getPreviousSugarLevel(), updated);
+        recordAnalyticsService.onUpdated(updated);
+        return updated;
     }
 
     /**
      * Get all the records.
      *
-     * @param recordsParams the pagination information.
+     * @param recordsParams the pagination information; open creation day bounds are closed as described in
+     *                      {@link RecordListingRange}.
      * @return the list of entities.
      */
     @Transactional(readOnly = true)
     public Page<Record> getAllRecords(RecordsParams recordsParams) {
         log.debug("Request to get all Records");
-        recordsParams.setUserId(userService.getCurrentUser().get().getId());
+        recordsParams.setUserId(userService.getCurrentUserId());
+        RecordListingRange range = listingRange(recordsParams.getFrom(), recordsParams.getTo());
+        recordsParams.setFrom(range.getFrom());
+        recordsParams.setTo(range.getTo());
         Pageable pageable = PageRequest.of(recordsParams.getOffset(), recordsParams.getLimit());
-        return recordRepository.findAll(pageable);
+        return recordRepository.findAll(new RecordSpecification(recordsParams), pageable);
+    }
+
+    /**
+     * Get a page of the current user's records ordered by {@code (dateCreated, id)}, starting after the cursor.
+     * <p>
+     * Unlike {@link #getAllRecords(RecordsParams)} no count query is issued and the cost of a page does not
+     * depend on how deep it is.
+     *
+     * @param cursor the continuation token of the previous page, or {@code null} for the first page.
+     * @param limit  the maximum number of records in the page.
+     * @param from   the first creation day to list, or {@code null} for the default one of {@link RecordListingRange}.
+     * @param to     the last creation day to list, or {@code null} for today.
+     * @return the page and the continuation token of the next one.
+     */
+    @Transactional(readOnly = true)
+    public RecordsCursorPageDTO getRecordsAfter(String cursor, int limit, LocalDate from, LocalDate to) {
+        log.debug("Request to get Records after cursor : {}", cursor);
+        Long userId = userService.getCurrentUserId();
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        RecordListingRange range = listingRange(from, to);
+        List<Record> records;
+        if (cursor == null) {
+            records = recordRepository.findFirstKeysetPage(userId, range.getFrom(), range.getTo(), pageable);
+        } else {
+            RecordCursor after = RecordCursor.decode(cursor);
+            records = recordRepository.findKeysetPageAfter(userId, after.getDateCreated(), after.getId(), range.getTo(), pageable);
+        }
+        if (records.size() <= limit) {
+            return new RecordsCursorPageDTO(records, null);
+        }
+        List<Record> content = records.subList(0, limit);
+        Record last = content.get(limit - 1);
+        return new RecordsCursorPageDTO(content, new RecordCursor(last.getDateCreated(), last.getId()).encode());
+    }
+
+    private RecordListingRange listingRange(LocalDate from, LocalDate to) {
+        return RecordListingRange.of(from, to, applicationProperties.getRecords().getListingDefaultMonths());
     }
 
     /**
@@ -83,6 +249,17 @@ public class RecordService {
         return recordRepository.findById(id);
     }
 
+    /**
+     * Get the version and the last update day of a record, without loading it.
+     *
+     * @param id the id of the entity.
+     * @return the validators of the entity.
+     */
+    @Transactional(readOnly = true)
+    public Optional<RecordVersionDTO> getVersion(Long id) {
+        return recordRepository.findVersionById(id);
+    }
+
     /**
      * Delete the record by id.
      *
@@ -90,6 +267,12 @@ public class RecordService {
      */
     public void delete(Long id) {
         log.debug("Request to delete Record : {}", id);
-        recordRepository.deleteById(id);
+        recordRepository.findById(id).ifPresent(record -> {
+            recordRepository.delete(record);
+            recordRepository.flush();
+            recordRollupService.refresh(record.getUserId(), record.getDateCreated());
+            recordAnomalyService.onDeleted(record);
+            recordAnalyticsService.onDeleted(id);
+        });
     }
 }
@@ -0,0 +1,461 @@
+package com.diploma.service;
+
+import com.diploma.domain.Record;
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Local append-only log of the records accepted by the write-behind ingestion mode.
+ * <p>
+ * The log is a sequence of memory-mapped segment files holding fixed-size entries, each protected by a CRC32 so
+ * that an entry torn by a crash is ignored on replay. Appends are group-committed: a single syncer thread forces
+ * the current segment to disk and releases every append that was written before the force started, so concurrent
+ * requests share one fsync.
+ * <p>
+ * Entries are read back in order by one drainer thread. Once a batch is stored in the database, its end position is
+ * saved in the {@code checkpoint} file and the segments before it are deleted. After a restart, reading resumes from
+ * the checkpoint, so records logged but not yet stored are replayed; a batch stored just before a crash is replayed
+ * too, and recognized by the position the database keeps for the log {@link #getId() id}. Entries that can never be
+ * stored are copied to the {@code dead-letter} file, in the same format.
+ */
+public class RecordWriteAheadLog implements Closeable {
+
+    /**
+     * crc (int), flags (byte), user id (long), heart rate (int), sugar level (double), creation and update days (long).
+     */
+    static final int ENTRY_SIZE = 4 + 1 + 8 + 4 + 8 + 8 + 8;
+
+    private static final byte PRESENT = 1;
+    private static final byte NO_HEART_RATE = 2;
+    private static final byte NO_SUGAR_LEVEL = 4;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final String ID = "log-id";
+    private static final String DEAD_LETTER = "dead-letter" + SEGMENT_SUFFIX;
+
+    private final Logger log = LoggerFactory.getLogger(RecordWriteAheadLog.class);
+    private final Path directory;
+    private final String id;
+    private final int entriesPerSegment;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pending = lock.newCondition();
+    private final Condition synced = lock.newCondition();
+    private final Thread syncer;
+
+    // guarded by lock
+    private Segment current;
+    private long appended;
+    private long durable;
+    private IOException failure;
+    private boolean closed;
+
+    private volatile Position durablePosition;
+
+    // used by the drainer thread only
+    private Position readPosition;
+    private long readSegment = -1;
+    private MappedByteBuffer readBuffer;
+
+    /**
+     * Open the log stored in {@code directory}, creating it if needed. Appends go to a new segment; entries left
+     * by a previous run are read first.
+     *
+     * @param directory   the directory of the segments and the checkpoint.
+     * @param segmentSize the size of one segment, in bytes.
+     * @throws IOException if the directory cannot be read or the new segment cannot be created.
+     */
+    public RecordWriteAheadLog(Path directory, long segmentSize) throws IOException {
+        this.directory = directory;
+        this.entriesPerSegment = (int) Math.min(segmentSize / ENTRY_SIZE, Integer.MAX_VALUE / ENTRY_SIZE);
+        if (entriesPerSegment < 1) {
+            throw new IllegalArgumentException("Segment size should be at least " + ENTRY_SIZE + " bytes");
+        }
+        Files.createDirectories(directory);
+        this.id = readOrCreateId();
+
+        List<Long> segments = listSegments();
+        long lastSegment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+        Position checkpoint = readCheckpoint();
+        readPosition = checkpoint != null ? checkpoint : new Position(segments.isEmpty() ? 1 : segments.get(0), 0);
+        if (segments.stream().anyMatch(segment -> segment >= readPosition.getSegment())) {
+            log.info("Replaying record log from segment {} entry {}", readPosition.getSegment(), readPosition.getEntry());
+        }
+
+        // a checkpoint at the start of a segment may name a segment that does not exist yet
+        long lastUsed = readPosition.getEntry() > 0 ? readPosition.getSegment() : readPosition.getSegment() - 1;
+        current = openSegment(Math.max(lastSegment, lastUsed) + 1);
+        durablePosition = new Position(current.sequence, 0);
+        syncer = new Thread(this::syncLoop, "record-wal-sync");
+        syncer.setDaemon(true);
+        syncer.start();
+    }
+
+    /**
+     * @return the id of the log, created with its directory; positions are only comparable within one log.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Append a record and wait until it is on disk.
+     *
+     * @param record the validated record, with its owner set.
+     * @throws IOException if the log cannot be written.
+     */
+    public void append(Record record) throws IOException {
+        byte[] entry = encode(record);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IOException("Record log is closed");
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            if (current.count == entriesPerSegment) {
+                roll();
+            }
+            ByteBuffer target = current.buffer.duplicate();
+            target.position(current.count * ENTRY_SIZE);
+            target.put(entry);
+            current.count++;
+            long ticket = ++appended;
+            pending.signal();
+            while (durable < ticket) {
+                if (failure != null) {
+                    throw failure;
+                }
+                synced.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Read the next durable entries, without consuming them.
+     *
+     * @param max the maximum number of records to read.
+     * @return the records and the position following them; empty if nothing is left to read.
+     * @throws IOException if a segment cannot be read.
+     */
+    public Batch read(int max) throws IOException {
+        while (true) {
+            Position limit = durablePosition;
+            boolean sealed = readPosition.getSegment() < limit.getSegment();
+            int end = sealed ? entriesPerSegment : limit.getEntry();
+            MappedByteBuffer buffer = readBuffer(readPosition.getSegment());
+
+            List<Record> records = new ArrayList<>();
+            int entry = readPosition.getEntry();
+            if (buffer != null) {
+                while (entry < end && records.size() < max) {
+                    Record record = decode(buffer, entry * ENTRY_SIZE);
+                    if (record == null) {
+                        break;
+                    }
+                    records.add(record);
+                    entry++;
+                }
+            }
+            if (!records.isEmpty()) {
+                return new Batch(records, readPosition, new Position(readPosition.getSegment(), entry));
+            }
+            if (!sealed) {
+                return new Batch(Collections.emptyList(), readPosition, readPosition);
+            }
+            // end of a sealed segment, or the torn tail of a crashed run
+            checkpoint(new Position(readPosition.getSegment() + 1, 0));
+        }
+    }
+
+    /**
+     * Mark every entry before {@code position} as stored, and delete the segments that are no longer needed.
+     *
+     * @param position the end position of the last stored batch.
+     * @throws IOException if the checkpoint cannot be written.
+     */
+    public void checkpoint(Position position) throws IOException {
+        Path temporary = directory.resolve(CHECKPOINT + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(12).putLong(position.getSegment()).putInt(position.getEntry());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(CHECKPOINT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        readPosition = position;
+        for (Long segment : listSegments()) {
+            if (segment < position.getSegment()) {
+                Files.deleteIfExists(segmentPath(segment));
+            }
+        }
+    }
+
+    /**
+     * Durably copy a record that cannot be stored to the dead-letter file, for inspection.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    public void deadLetter(Record record) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve(DEAD_LETTER), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(encode(record));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Stop accepting appends, wait for the pending ones to reach the disk and release the files.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            pending.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            syncer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        current.channel.close();
+    }
+
+    private void syncLoop() {
+        while (true) {
+            Segment segment;
+            long target;
+            Position position;
+            lock.lock();
+            try {
+                while (appended == durable && !closed) {
+                    pending.awaitUninterruptibly();
+                }
+                if (appended == durable) {
+                    return;
+                }
+                segment = current;
+                target = appended;
+                position = new Position(segment.sequence, segment.count);
+            } finally {
+                lock.unlock();
+            }
+
+            RuntimeException error = null;
+            try {
+                segment.buffer.force();
+            } catch (RuntimeException e) {
+                error = e;
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    log.error("Could not sync record log segment {}", segment.sequence, error);
+                    failure = new IOException("Record log is not writable", error);
+                } else {
+                    durable = target;
+                    durablePosition = position;
+                }
+                synced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (error != null) {
+                return;
+            }
+        }
+    }
+
+    private void roll() throws IOException {
+        current.buffer.force();
+        current.channel.close();
+        current = openSegment(current.sequence + 1);
+    }
+
+    private Segment openSegment(long sequence) throws IOException {
+        FileChannel channel = FileChannel.open(segmentPath(sequence), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) entriesPerSegment * ENTRY_SIZE);
+        return new Segment(sequence, channel, buffer);
+    }
+
+    private MappedByteBuffer readBuffer(long segment) throws IOException {
+        if (segment != readSegment) {
+            readSegment = segment;
+            readBuffer = null;
+            Path path = segmentPath(segment);
+            if (Files.exists(path)) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    readBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), (long) entriesPerSegment * ENTRY_SIZE));
+                }
+            }
+        }
+        return readBuffer;
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private String readOrCreateId() throws IOException {
+        Path path = directory.resolve(ID);
+        if (Files.exists(path)) {
+            return Files.readString(path).trim();
+        }
+        String created = UUID.randomUUID().toString();
+        Path temporary = directory.resolve(ID + ".tmp");
+        Files.writeString(temporary, created);
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+        return created;
+    }
+
+    private Position readCheckpoint() throws IOException {
+        Path path = directory.resolve(CHECKPOINT);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        return new Position(buffer.getLong(), buffer.getInt());
+    }
+
+    private Path segmentPath(long sequence) {
+        return directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    private static byte[] encode(Record record) {
+        byte flags = PRESENT;
+        if (record.getHeartRate() == null) {
+            flags |= NO_HEART_RATE;
+        }
+        if (record.getSugarLevel() == null) {
+            flags |= NO_SUGAR_LEVEL;
+        }
+        byte[] entry = new byte[ENTRY_SIZE];
+        ByteBuffer.wrap(entry, 4, ENTRY_SIZE - 4)
+                .put(flags)
+                .putLong(record.getUserId())
+                .putInt(record.getHeartRate() == null ? 0 : record.getHeartRate())
+                .putDouble(record.getSugarLevel() == null ? 0 : record.getSugarLevel())
+                .putLong(record.getDateCreated().toEpochDay())
+                .putLong(record.getDateUpdated().toEpochDay());
+        CRC32 crc = new CRC32();
+        crc.update(entry, 4, ENTRY_SIZE - 4);
+        ByteBuffer.wrap(entry).putInt((int) crc.getValue());
+        return entry;
+    }
+
+    private static Record decode(ByteBuffer buffer, int offset) {
+        if (offset + ENTRY_SIZE > buffer.capacity()) {
+            return null;
+        }
+        ByteBuffer entry = buffer.duplicate();
+        entry.position(offset).limit(offset + ENTRY_SIZE);
+        int crc = entry.getInt();
+        CRC32 expected = new CRC32();
+        expected.update(entry.duplicate());
+        byte flags = entry.get();
+        if ((flags & PRESENT) == 0 || crc != (int) expected.getValue()) {
+            return null;
+        }
+        long userId = entry.getLong();
+        int heartRate = entry.getInt();
+        double sugarLevel = entry.getDouble();
+        return Record.builder()
+                .userId(userId)
+                .heartRate((flags & NO_HEART_RATE) != 0 ? null : heartRate)
+                .sugarLevel((flags & NO_SUGAR_LEVEL) != 0 ? null : sugarLevel)
+                .dateCreated(LocalDate.ofEpochDay(entry.getLong()))
+                .dateUpdated(LocalDate.ofEpochDay(entry.getLong()))
+                .build();
+    }
+
+    /**
+     * A position in the log: the sequence number of a segment and the index of an entry in it.
+     */
+    @Value
+    public static class Position implements Comparable<Position> {
+        long segment;
+        int entry;
+
+        @Override
+        public int compareTo(Position other) {
+            int bySegment = Long.compare(segment, other.segment);
+            return bySegment != 0 ? bySegment : Integer.compare(entry, other.entry);
+        }
+    }
+
+    /**
+     * Consecutive records read from one segment of the log, with the positions of the first one and following the
+     * last one.
+     */
+    @Value
+    public static class Batch {
+        List<Record> records;
+        Position start;
+        Position end;
+
+        public boolean isEmpty() {
+            return records.isEmpty();
+        }
+
+        /**
+         * @return the position following the record at {@code index}.
+         */
+        public Position after(int index) {
+            return new Position(start.getSegment(), start.getEntry() + index + 1);
+        }
+    }
+
+    private static final class Segment {
+        private final long sequence;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int count;
+
+        private Segment(long sequence, FileChannel channel, MappedByteBuffer buffer) {
+            this.sequence = sequence;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -5,11 +5,21 @@ import lombok.Data;
 
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
+import java.time.LocalDate;
 
 @Data
 @Builder
 public class RecordsParams {
     private Long userId;
+    /**
+     * The first creation day to list, or {@code null} for the default of {@link RecordListingRange}; bounds let the
+     * planner prune partitions.
+     */
+    private LocalDate from;
+    /**
+     * The last creation day to list, or {@code null} for today.
+     */
+    private LocalDate to;
     @Min(value = 0, message = "Offset should not be less than 0")
     @Builder.Default
     private Integer offset = 0;
@@ -0,0 +1,84 @@
+package com.diploma.service;
+
+import com.diploma.config.ApplicationProperties;
+import com.diploma.domain.Record;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+/**
+ * Service purging the records of deleted users in the background.
+ * <p>
+ * A worker picks the unfinished purge jobs, oldest first, and deletes the records of each user in chunks of
+ * {@code application.users.purge.chunk-size} through {@link UserService#purgeChunk}, one short transaction per
+ * chunk, until none is left. Progress is stored with every chunk, so jobs interrupted by a restart are picked up
+ * again on the next start.
+ */
+@Service
+@RequiredArgsConstructor
+public class UserPurgeService {
+
+    private static final int JOBS_PER_POLL = 10;
+
+    private final Logger log = LoggerFactory.getLogger(UserPurgeService.class);
+    private final ApplicationProperties applicationProperties;
+    private final UserService userService;
+    private final EntityManagerFactory entityManagerFactory;
+
+    private Thread worker;
+    private volatile boolean running;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWorker() {
+        running = true;
+        worker = new Thread(this::work, "user-purge-worker");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void work() {
+        ApplicationProperties.Users.Purge purge = applicationProperties.getUsers().getPurge();
+        while (running) {
+            try {
+                List<Long> userIds = userService.getUnfinishedPurges(JOBS_PER_POLL);
+                for (Long userId : userIds) {
+                    boolean remaining = true;
+                    while (running && remaining) {
+                        remaining = userService.purgeChunk(userId, purge.getChunkSize());
+                    }
+                    // the rows left the table behind Hibernate's back
+                    entityManagerFactory.getCache().evict(Record.class);
+                }
+                // also paces the polling of jobs run by another instance
+                Thread.sleep(purge.getPollInterval());
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                log.error("Could not purge deleted users, retrying", e);
+                try {
+                    Thread.sleep(purge.getPollInterval());
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop the worker once its current chunk is committed; unfinished purges resume on the next start.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            worker.join();
+        }
+    }
+}
@@ -1,20 +1,37 @@
 package com.diploma.service;
 
+import com.diploma.domain.Record;
 import com.diploma.domain.User;
+import com.diploma.domain.UserPurgeJob;
+import com.diploma.domain.enumeration.PurgeStatus;
+import com.diploma.repository.RecordRepository;
+import com.diploma.repository.UserPurgeRepository;
 import com.diploma.repository.UserRepository;
+import com.diploma.repository.UserUpdateRepository;
+import com.diploma.security.AuthenticatedUser;
+import com.diploma.security.DeletedUsers;
+import com.diploma.service.dto.UserDTO;
 import com.diploma.service.specification.UserSpecification;
+import com.diploma.web.rest.errors.ProcessException;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * Service Implementation for managing {@link User}.
@@ -26,6 +43,12 @@ public class UserService {
 
     private final Logger log = LoggerFactory.getLogger(UserService.class);
     private final UserRepository userRepository;
+    private final UserUpdateRepository userUpdateRepository;
+    private final UserPurgeRepository userPurgeRepository;
+    private final RecordAnomalyService recordAnomalyService;
+    private final RecordAnalyticsService recordAnalyticsService;
+    private final DeletedUsers deletedUsers;
+    private final RecordRepository recordRepository;
     private final BCryptPasswordEncoder passwordEncoder;
 
     /**
@@ -37,7 +60,9 @@ public class UserService {
     public User create(final User user) {
         log.debug("Request to save User : {}", user);
         user.setPassword(passwordEncoder.encode(user.getPassword()));
-        return userRepository.save(user);
+        User result = userRepository.save(user);
+        recordAnalyticsService.onUserSaved(result);
+        return result;
     }
 
     public boolean existsById(final Long id) {
@@ -45,67 +70,163 @@ public class UserService {
     }
 
     /**
-     * Update a user.
+     * Update the profile of a user in one conditional statement, if it still has the version the caller has read.
      *
-     * @param user the entity to save.
-     * @return the persisted entity.
+     * @param user    the entity to save; its password and role are left unchanged.
+     * @param version the version the caller has read.
+     * @return the persisted entity without its password, with its new version.
+     * @throws ProcessException {@code 404} if the user does not exist, {@code 409} if it has another version.
      */
-    public User update(final User user) {
-        User updated = User.builder()
-                .id(user.getId())
-                .name(user.getName())
-                .surname(user.getSurname())
-                .email(user.getEmail())
-                .birthDate(user.getBirthDate())
-                .gender(user.getGender())
-                .weight(user.getWeight())
-                .build();
-        log.debug("Request to save User : {}", updated);
-        return userRepository.save(updated);
+    public User update(final User user, final Long version) {
+        log.debug("Request to update User : {} at version {}", user, version);
+        User result = userUpdateRepository.update(user, version).orElseThrow(() ->
+                userRepository.existsById(user.getId())
+                        ? new ProcessException("User " + user.getId() + " was modified concurrently", HttpStatus.CONFLICT)
+                        : new ProcessException("User " + user.getId() + " not found", HttpStatus.NOT_FOUND));
+        recordAnalyticsService.onUserSaved(result);
+        return result;
     }
 
     public Optional<User> getUserByEmail(String email) {
         return userRepository.findUserByEmail(email);
     }
 
-    public Optional<User> getCurrentUser() {
+    /**
+     * Get the id of the authenticated user from the principal, without querying the database
+     * unless the access token predates the {@code user_id} claim.
+     *
+     * @return the id of the current user.
+     */
+    public Long getCurrentUserId() {
         Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        return this.getUserByEmail(principal.toString());
+        if (principal instanceof AuthenticatedUser && ((AuthenticatedUser) principal).getId() != null) {
+            return ((AuthenticatedUser) principal).getId();
+        }
+        return this.getUserByEmail(principal.toString()).map(User::getId).orElseThrow();
     }
 
     /**
-     * Get all the users.
+     * Get all the users, without their password.
      *
      * @param searchParameters the pagination information.
-     * @return the list of entities.
+     * @param recordsLimit     the number of latest records to attach to each user, or {@code null} for none.
+     * @return the list of users.
      */
     @Transactional(readOnly = true)
-    public Page<User> getAllUsers(SearchParameters searchParameters) {
+    public Page<UserDTO> getAllUsers(SearchParameters searchParameters, Integer recordsLimit) {
         log.debug("Request to get all Users");
         UserSpecification spec = new UserSpecification(searchParameters);
         Pageable pageable = PageRequest.of(searchParameters.getOffset(), searchParameters.getLimit());
-        return userRepository.findAll(spec, pageable);
+        Page<UserDTO> page = userRepository.findAllSummaries(spec, pageable);
+        if (recordsLimit != null) {
+            attachLatestRecords(page.getContent(), recordsLimit);
+        }
+        return page;
     }
 
     /**
-     * Get one user by id.
+     * Get one user by id, without its password.
      *
-     * @param id the id of the entity.
-     * @return the entity.
+     * @param id           the id of the entity.
+     * @param recordsLimit the number of latest records to attach to the user, or {@code null} for none.
+     * @return the user.
      */
     @Transactional(readOnly = true)
-    public Optional<User> getById(Long id) {
+    public Optional<UserDTO> getById(Long id, Integer recordsLimit) {
         log.debug("Request to get User : {}", id);
-        return userRepository.findById(id);
+        Optional<UserDTO> user = userRepository.findSummaryById(id);
+        if (recordsLimit != null) {
+            user.ifPresent(item -> attachLatestRecords(List.of(item), recordsLimit));
+        }
+        return user;
+    }
+
+    /**
+     * Get the version of a user, without loading it.
+     *
+     * @param id the id of the entity.
+     * @return the version of the entity.
+     */
+    @Transactional(readOnly = true)
+    public Optional<Long> getVersion(Long id) {
+        return userRepository.findVersionById(id);
+    }
+
+    /**
+     * Load the latest records of all the given users with one query, instead of one per user.
+     */
+    private void attachLatestRecords(Collection<UserDTO> users, int recordsLimit) {
+        if (users.isEmpty()) {
+            return;
+        }
+        List<Long> ids = users.stream().map(UserDTO::getId).collect(Collectors.toList());
+        Map<Long, List<Record>> recordsByUser = recordRepository.findLatestByUserIds(ids, recordsLimit).stream()
+                .collect(Collectors.groupingBy(Record::getUserId));
+        users.forEach(user -> user.setRecords(recordsByUser.getOrDefault(user.getId(), new ArrayList<>())));
     }
 
     /**
-     * Delete the user by id.
+     * Delete the user by id: the user is hidden at once and its records are purged in the background by
+     * {@link UserPurgeService}. Deleting a user whose purge already exists is a no-op.
      *
      * @param id the id of the entity.
+     * @throws ProcessException {@code 404} if the user does not exist.
      */
     public void delete(Long id) {
         log.debug("Request to delete User : {}", id);
-        userRepository.deleteById(id);
+        if (userRepository.markDeleted(id, Instant.now()) == 0 && userPurgeRepository.findById(id).isEmpty()) {
+            throw new ProcessException("User " + id + " not found", HttpStatus.NOT_FOUND);
+        }
+        userPurgeRepository.create(id);
+        deletedUsers.onDeleted(id);
+        recordAnomalyService.onUserDeleted(id);
+        recordAnalyticsService.onUserDeleted(id);
+    }
+
+    /**
+     * Get the purge progress of a deleted user.
+     *
+     * @param id the id of the entity.
+     * @return the purge job.
+     */
+    @Transactional(readOnly = true)
+    public Optional<UserPurgeJob> getPurge(Long id) {
+        return userPurgeRepository.findById(id);
+    }
+
+    /**
+     * @return the deleted users whose records are not purged yet, oldest deletion first.
+     */
+    @Transactional(readOnly = true)
+    public List<Long> getUnfinishedPurges(int limit) {
+        return userPurgeRepository.findUnfinished(limit);
+    }
+
+    /**
+     * Delete the next chunk of records of a deleted user in one transaction, together with its progress;
+     * once no record is left, delete the user itself.
+     *
+     * @param id        the id of the deleted user.
+     * @param chunkSize the maximum number of records deleted.
+     * @return whether records may remain, {@code false} once the purge is done or is run by another instance.
+     */
+    public boolean purgeChunk(Long id, int chunkSize) {
+        Optional<UserPurgeJob> job = userPurgeRepository.lock(id);
+        if (job.isEmpty()) {
+            return false;
+        }
+        if (job.get().getStatus() == PurgeStatus.PENDING) {
+            userPurgeRepository.start(id);
+        }
+        int deleted = userPurgeRepository.deleteRecords(job.get(), chunkSize);
+        log.debug("Purged {} records of User : {}", deleted, id);
+        if (deleted == chunkSize) {
+            return true;
+        }
+        userPurgeRepository.complete(id);
+        recordAnomalyService.onUserPurged(id);
+        recordAnalyticsService.onUserPurged(id);
+        log.info("Purge of User {} done", id);
+        return false;
     }
 }
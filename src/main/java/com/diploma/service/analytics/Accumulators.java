@@ -0,0 +1,116 @@
+package com.diploma.service.analytics;
+
+import com.diploma.service.dto.RecordAggregateDTO;
+
+import java.util.Arrays;
+
+/**
+ * Counts, sums, minimums and maximums of heart rates and sugar levels, in primitive arrays indexed by group.
+ * <p>
+ * Sugar levels are summed in tenths to stay exact.
+ */
+class Accumulators {
+
+    private long[] records;
+    private long[] heartRateCounts;
+    private long[] heartRateSums;
+    private int[] heartRateMins;
+    private int[] heartRateMaxs;
+    private long[] sugarLevelCounts;
+    private long[] sugarLevelSums;
+    private int[] sugarLevelMins;
+    private int[] sugarLevelMaxs;
+
+    Accumulators(int capacity) {
+        records = new long[capacity];
+        heartRateCounts = new long[capacity];
+        heartRateSums = new long[capacity];
+        heartRateMins = filled(capacity, Integer.MAX_VALUE);
+        heartRateMaxs = filled(capacity, Integer.MIN_VALUE);
+        sugarLevelCounts = new long[capacity];
+        sugarLevelSums = new long[capacity];
+        sugarLevelMins = filled(capacity, Integer.MAX_VALUE);
+        sugarLevelMaxs = filled(capacity, Integer.MIN_VALUE);
+    }
+
+    int capacity() {
+        return records.length;
+    }
+
+    void grow(int capacity) {
+        int previous = records.length;
+        records = Arrays.copyOf(records, capacity);
+        heartRateCounts = Arrays.copyOf(heartRateCounts, capacity);
+        heartRateSums = Arrays.copyOf(heartRateSums, capacity);
+        heartRateMins = Arrays.copyOf(heartRateMins, capacity);
+        heartRateMaxs = Arrays.copyOf(heartRateMaxs, capacity);
+        sugarLevelCounts = Arrays.copyOf(sugarLevelCounts, capacity);
+        sugarLevelSums = Arrays.copyOf(sugarLevelSums, capacity);
+        sugarLevelMins = Arrays.copyOf(sugarLevelMins, capacity);
+        sugarLevelMaxs = Arrays.copyOf(sugarLevelMaxs, capacity);
+        Arrays.fill(heartRateMins, previous, capacity, Integer.MAX_VALUE);
+        Arrays.fill(heartRateMaxs, previous, capacity, Integer.MIN_VALUE);
+        Arrays.fill(sugarLevelMins, previous, capacity, Integer.MAX_VALUE);
+        Arrays.fill(sugarLevelMaxs, previous, capacity, Integer.MIN_VALUE);
+    }
+
+    /**
+     * @param heartRate        the heart rate, or {@link RecordColumnStore#NO_HEART_RATE}.
+     * @param sugarLevelTenths the sugar level in tenths, or {@link RecordColumnStore#NO_SUGAR_LEVEL}.
+     */
+    void add(int group, int heartRate, short sugarLevelTenths) {
+        records[group]++;
+        if (heartRate != RecordColumnStore.NO_HEART_RATE) {
+            heartRateCounts[group]++;
+            heartRateSums[group] += heartRate;
+            heartRateMins[group] = Math.min(heartRateMins[group], heartRate);
+            heartRateMaxs[group] = Math.max(heartRateMaxs[group], heartRate);
+        }
+        if (sugarLevelTenths != RecordColumnStore.NO_SUGAR_LEVEL) {
+            sugarLevelCounts[group]++;
+            sugarLevelSums[group] += sugarLevelTenths;
+            sugarLevelMins[group] = Math.min(sugarLevelMins[group], sugarLevelTenths);
+            sugarLevelMaxs[group] = Math.max(sugarLevelMaxs[group], sugarLevelTenths);
+        }
+    }
+
+    /**
+     * Add a group of other accumulators to a group of these.
+     */
+    void merge(int group, Accumulators other, int otherGroup) {
+        records[group] += other.records[otherGroup];
+        heartRateCounts[group] += other.heartRateCounts[otherGroup];
+        heartRateSums[group] += other.heartRateSums[otherGroup];
+        heartRateMins[group] = Math.min(heartRateMins[group], other.heartRateMins[otherGroup]);
+        heartRateMaxs[group] = Math.max(heartRateMaxs[group], other.heartRateMaxs[otherGroup]);
+        sugarLevelCounts[group] += other.sugarLevelCounts[otherGroup];
+        sugarLevelSums[group] += other.sugarLevelSums[otherGroup];
+        sugarLevelMins[group] = Math.min(sugarLevelMins[group], other.sugarLevelMins[otherGroup]);
+        sugarLevelMaxs[group] = Math.max(sugarLevelMaxs[group], other.sugarLevelMaxs[otherGroup]);
+    }
+
+    boolean isEmpty(int group) {
+        return records[group] == 0;
+    }
+
+    RecordAggregateDTO toDTO(int group, String key) {
+        return RecordAggregateDTO.builder()
+                .group(key)
+                .records(records[group])
+                .heartRateCount(heartRateCounts[group])
+                .heartRateMin(heartRateCounts[group] == 0 ? null : heartRateMins[group])
+                .heartRateMax(heartRateCounts[group] == 0 ? null : heartRateMaxs[group])
+                .heartRateAvg(heartRateCounts[group] == 0 ? null : (double) heartRateSums[group] / heartRateCounts[group])
+                .sugarLevelCount(sugarLevelCounts[group])
+                .sugarLevelMin(sugarLevelCounts[group] == 0 ? null : sugarLevelMins[group] / 10.0)
+                .sugarLevelMax(sugarLevelCounts[group] == 0 ? null : sugarLevelMaxs[group] / 10.0)
+                .sugarLevelAvg(sugarLevelCounts[group] == 0 ? null : sugarLevelSums[group] / 10.0 / sugarLevelCounts[group])
+                .build();
+    }
+
+    private static int[] filled(int length, int value) {
+        int[] array = new int[length];
+        Arrays.fill(array, value);
+        return array;
+    }
+}
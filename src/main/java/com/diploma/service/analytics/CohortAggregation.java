@@ -0,0 +1,95 @@
+package com.diploma.service.analytics;
+
+import com.diploma.domain.enumeration.Gender;
+import com.diploma.service.dto.RecordAggregateDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Heart rates and sugar levels of records aggregated per gender and age band of their user.
+ * <p>
+ * Groups are dense: {@code gender * bands + band}, where the last band and gender {@code 0} hold users whose
+ * birth day or gender is unknown. Records of users absent from the {@link UserDemographics} are skipped.
+ */
+public class CohortAggregation implements PartialAggregate<CohortAggregation> {
+
+    private static final int MAX_AGE = 150;
+    private static final int GENDERS = Gender.values().length + 1;
+
+    private final CohortQuery query;
+    private final UserDemographics demographics;
+    private final int bands;
+    private final Accumulators accumulators;
+
+    public CohortAggregation(CohortQuery query, UserDemographics demographics) {
+        this.query = query;
+        this.demographics = demographics;
+        this.bands = query.isByAgeBand() ? MAX_AGE / query.getAgeBandWidth() + 2 : 1;
+        this.accumulators = new Accumulators((query.isByGender() ? GENDERS : 1) * bands);
+    }
+
+    @Override
+    public void add(long userId, int epochDay, int heartRate, short sugarLevelTenths) {
+        int slot = demographics.slot(userId);
+        if (slot == LongIntHashMap.MISSING) {
+            return;
+        }
+        byte gender = demographics.gender(slot);
+        if (query.getGenders() != 0 && (query.getGenders() & (1 << gender)) == 0) {
+            return;
+        }
+        if (query.filtersWeight()) {
+            int weight = demographics.weightTenths(slot);
+            if (weight == UserDemographics.NO_WEIGHT || weight < query.getWeightTenthsMin() || weight > query.getWeightTenthsMax()) {
+                return;
+            }
+        }
+        int birthDay = demographics.birthDay(slot);
+        // years of 365.25 days
+        int age = birthDay == UserDemographics.NO_BIRTH_DAY ? -1 : (int) ((epochDay - (long) birthDay) * 4 / 1461);
+        if (query.filtersAge() && (age < 0 || age < query.getAgeMin() || age > query.getAgeMax())) {
+            return;
+        }
+        int band = 0;
+        if (query.isByAgeBand()) {
+            band = age < 0 || age > MAX_AGE ? bands - 1 : age / query.getAgeBandWidth();
+        }
+        int group = (query.isByGender() ? gender : 0) * bands + band;
+        accumulators.add(group, heartRate, sugarLevelTenths);
+    }
+
+    @Override
+    public void merge(CohortAggregation other) {
+        for (int g = 0; g < accumulators.capacity(); g++) {
+            if (!other.accumulators.isEmpty(g)) {
+                accumulators.merge(g, other.accumulators, g);
+            }
+        }
+    }
+
+    /**
+     * @return the non-empty groups, by gender then age band.
+     */
+    public List<RecordAggregateDTO> toResult() {
+        List<RecordAggregateDTO> result = new ArrayList<>();
+        for (int g = 0; g < accumulators.capacity(); g++) {
+            if (!accumulators.isEmpty(g)) {
+                result.add(accumulators.toDTO(g, key(g / bands, g % bands)));
+            }
+        }
+        return result;
+    }
+
+    private String key(int gender, int band) {
+        List<String> parts = new ArrayList<>(2);
+        if (query.isByGender()) {
+            parts.add("gender=" + (gender == UserDemographics.NO_GENDER ? "UNKNOWN" : Gender.values()[gender - 1].name()));
+        }
+        if (query.isByAgeBand()) {
+            int width = query.getAgeBandWidth();
+            parts.add("age=" + (band == bands - 1 ? "UNKNOWN" : band * width + "-" + (band * width + width - 1)));
+        }
+        return parts.isEmpty() ? "all" : String.join(";", parts);
+    }
+}
@@ -0,0 +1,46 @@
+package com.diploma.service.analytics;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * A cohort query: records filtered by {@link #records}, joined with the demographics of their user, filtered by
+ * gender, weight and age, and grouped by gender and age band.
+ * <p>
+ * The age is the age of the user on the day of the record, in years of 365.25 days. Every bound is inclusive; a
+ * user missing an attribute never matches a filter on that attribute. Queries are values, so they key the result
+ * cache.
+ */
+@Value
+@Builder
+public class CohortQuery {
+
+    /**
+     * The record filters; its grouping is ignored.
+     */
+    RecordAnalyticsQuery records;
+    /**
+     * Bit {@code ordinal + 1} set for each accepted gender, bit 0 for users without one; {@code 0} accepts all.
+     */
+    int genders;
+    @Builder.Default
+    int weightTenthsMin = Integer.MIN_VALUE;
+    @Builder.Default
+    int weightTenthsMax = Integer.MAX_VALUE;
+    @Builder.Default
+    int ageMin = Integer.MIN_VALUE;
+    @Builder.Default
+    int ageMax = Integer.MAX_VALUE;
+    boolean byGender;
+    boolean byAgeBand;
+    @Builder.Default
+    int ageBandWidth = 10;
+
+    public boolean filtersWeight() {
+        return weightTenthsMin != Integer.MIN_VALUE || weightTenthsMax != Integer.MAX_VALUE;
+    }
+
+    public boolean filtersAge() {
+        return ageMin != Integer.MIN_VALUE || ageMax != Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,11 @@
+package com.diploma.service.analytics;
+
+/**
+ * The grouping of an analytical query.
+ */
+public enum GroupBy {
+    NONE,
+    DAY,
+    MONTH,
+    USER
+}
@@ -0,0 +1,61 @@
+package com.diploma.service.analytics;
+
+/**
+ * HDR-style log-linear bucketing of non-negative integer values: values below {@code 2^(precisionBits + 1)} get
+ * their own bucket, larger values share buckets {@code 2^shift} wide, {@code 2^precisionBits} buckets per power of
+ * two. The midpoint of a bucket is within {@code 2^-(precisionBits + 1)} of any value in it, and bucket indexes grow
+ * with the logarithm of the values, so a sketch stays small whatever the range of its values.
+ */
+public final class LogLinearScale {
+
+    private final int precisionBits;
+    private final int exactLimit;
+
+    public LogLinearScale(int precisionBits) {
+        if (precisionBits < 1 || precisionBits > 16) {
+            throw new IllegalArgumentException("Precision bits should be between 1 and 16: " + precisionBits);
+        }
+        this.precisionBits = precisionBits;
+        this.exactLimit = 1 << (precisionBits + 1);
+    }
+
+    /**
+     * @return the bucket index of a value; negative values are counted as {@code 0}.
+     */
+    public int index(int value) {
+        if (value < exactLimit) {
+            return Math.max(0, value);
+        }
+        int shift = 31 - Integer.numberOfLeadingZeros(value) - precisionBits;
+        return (shift << precisionBits) + (value >>> shift);
+    }
+
+    public int lowest(int index) {
+        if (index < exactLimit) {
+            return index;
+        }
+        int shift = (index >>> precisionBits) - 1;
+        return (index - (shift << precisionBits)) << shift;
+    }
+
+    public int highest(int index) {
+        if (index < exactLimit) {
+            return index;
+        }
+        return lowest(index) + (1 << ((index >>> precisionBits) - 1)) - 1;
+    }
+
+    /**
+     * @return the midpoint of a bucket, the value reported for every value counted in it.
+     */
+    public double representative(int index) {
+        return (lowest(index) + (double) highest(index)) / 2;
+    }
+
+    /**
+     * @return the bound of the relative error of {@link #representative(int)}.
+     */
+    public double relativeError() {
+        return 1.0 / exactLimit;
+    }
+}
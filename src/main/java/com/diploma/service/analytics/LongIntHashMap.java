@@ -0,0 +1,116 @@
+package com.diploma.service.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from {@code long} keys to non-negative {@code int} values, without boxing.
+ * <p>
+ * Linear probing with backward-shift deletion, kept at most two thirds full: about 18 to 36 bytes per entry.
+ * Not thread-safe.
+ */
+public class LongIntHashMap {
+
+    public static final int MISSING = -1;
+
+    private long[] keys;
+    // value + 1, 0 when the position is empty
+    private int[] values;
+    private int size;
+
+    public LongIntHashMap(int expectedSize) {
+        int length = Integer.highestOneBit(Math.max(expectedSize * 3 / 2, 8) - 1) << 1;
+        this.keys = new long[length];
+        this.values = new int[length];
+    }
+
+    /**
+     * @return the value of the key, or {@link #MISSING}.
+     */
+    public int get(long key) {
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; values[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i] - 1;
+            }
+        }
+        return MISSING;
+    }
+
+    public void put(long key, int value) {
+        if ((size + 1) * 3L > keys.length * 2L) {
+            resize(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (values[i] != 0) {
+            if (keys[i] == key) {
+                values[i] = value + 1;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value + 1;
+        size++;
+    }
+
+    /**
+     * @return the removed value, or {@link #MISSING}.
+     */
+    public int remove(long key) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (values[i] != 0 && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (values[i] == 0) {
+            return MISSING;
+        }
+        int removed = values[i] - 1;
+        // shift back the following entries of the probe sequence into the hole
+        int hole = i;
+        for (int j = (i + 1) & mask; values[j] != 0; j = (j + 1) & mask) {
+            int home = mix(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        values[hole] = 0;
+        size--;
+        return removed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    private void resize(int length) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[length];
+        values = new int[length];
+        int mask = length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] != 0) {
+                int i = mix(oldKeys[j]) & mask;
+                while (values[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,48 @@
+package com.diploma.service.analytics;
+
+/**
+ * The merge of any number of {@link QuantileSketch}es into a dense histogram, to read quantiles from.
+ */
+public class MergedSketch {
+
+    private final LogLinearScale scale;
+    private long[] histogram = new long[256];
+    private long count;
+
+    public MergedSketch(LogLinearScale scale) {
+        this.scale = scale;
+    }
+
+    public void merge(QuantileSketch sketch) {
+        if (!sketch.isEmpty()) {
+            histogram = sketch.addTo(histogram);
+            count += sketch.count();
+        }
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /**
+     * The nearest-rank quantile: the value of rank {@code ceil(quantile * count)}, within the relative error of the
+     * scale.
+     *
+     * @param quantile between {@code 0} and {@code 1}.
+     * @return the quantile, or {@code null} if no value was merged.
+     */
+    public Double quantile(double quantile) {
+        if (count == 0) {
+            return null;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int index = 0; index < histogram.length; index++) {
+            seen += histogram[index];
+            if (seen >= rank) {
+                return scale.representative(index);
+            }
+        }
+        throw new IllegalStateException("Histogram holds fewer values than its count");
+    }
+}
@@ -0,0 +1,66 @@
+package com.diploma.service.analytics;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Fork-join scan of a range of chunks of a {@link RecordColumnStore}: the range is split in halves down to
+ * {@value #LEAF_CHUNKS} chunks, each leaf aggregates its chunks into its own partial aggregate, and partial
+ * aggregates are merged on the way back up.
+ * <p>
+ * The store must not be written while the scan runs. Leaves check the cancellation flag before each chunk.
+ *
+ * @param <T> the type of the aggregate.
+ */
+public class ParallelScan<T extends PartialAggregate<T>> extends RecursiveTask<T> {
+
+    private static final int LEAF_CHUNKS = 4;
+
+    private final RecordColumnStore store;
+    private final RecordAnalyticsQuery query;
+    private final Supplier<T> partials;
+    private final AtomicBoolean cancelled;
+    private final int fromChunk;
+    private final int toChunk;
+
+    /**
+     * @param partials  creates an empty partial aggregate.
+     * @param cancelled set to stop the scan with a {@link CancellationException}.
+     */
+    public ParallelScan(RecordColumnStore store, RecordAnalyticsQuery query, Supplier<T> partials, AtomicBoolean cancelled) {
+        this(store, query, partials, cancelled, 0, store.chunkCount());
+    }
+
+    private ParallelScan(RecordColumnStore store, RecordAnalyticsQuery query, Supplier<T> partials, AtomicBoolean cancelled,
+                         int fromChunk, int toChunk) {
+        this.store = store;
+        this.query = query;
+        this.partials = partials;
+        this.cancelled = cancelled;
+        this.fromChunk = fromChunk;
+        this.toChunk = toChunk;
+    }
+
+    @Override
+    protected T compute() {
+        if (toChunk - fromChunk <= LEAF_CHUNKS) {
+            T partial = partials.get();
+            for (int chunk = fromChunk; chunk < toChunk; chunk++) {
+                if (cancelled.get()) {
+                    throw new CancellationException();
+                }
+                store.scan(chunk, query, partial);
+            }
+            return partial;
+        }
+        int middle = (fromChunk + toChunk) >>> 1;
+        ParallelScan<T> left = new ParallelScan<>(store, query, partials, cancelled, fromChunk, middle);
+        ParallelScan<T> right = new ParallelScan<>(store, query, partials, cancelled, middle, toChunk);
+        left.fork();
+        T result = right.compute();
+        result.merge(left.join());
+        return result;
+    }
+}
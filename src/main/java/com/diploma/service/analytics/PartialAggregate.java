@@ -0,0 +1,22 @@
+package com.diploma.service.analytics;
+
+/**
+ * An aggregate fed by {@link RecordColumnStore#scan} that can be computed in parts over disjoint chunks and merged.
+ *
+ * @param <T> the type of the aggregate itself.
+ */
+public interface PartialAggregate<T extends PartialAggregate<T>> {
+
+    /**
+     * Add one row matching the record filters of the query.
+     *
+     * @param heartRate        the heart rate, or {@link RecordColumnStore#NO_HEART_RATE}.
+     * @param sugarLevelTenths the sugar level in tenths, or {@link RecordColumnStore#NO_SUGAR_LEVEL}.
+     */
+    void add(long userId, int epochDay, int heartRate, short sugarLevelTenths);
+
+    /**
+     * Add another part of the same query.
+     */
+    void merge(T other);
+}
@@ -0,0 +1,87 @@
+package com.diploma.service.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Counts of values per {@link LogLinearScale} bucket, held sparsely as sorted bucket indexes and their counts.
+ * <p>
+ * Unlike a t-digest, counts are exact per bucket, so a value can be removed again when its record is updated or
+ * deleted, and sketches merge by adding counts, in any order, without losing accuracy. A sketch takes 8 bytes per
+ * distinct bucket plus about 56 bytes of overhead.
+ */
+public class QuantileSketch {
+
+    private static final int[] EMPTY = new int[0];
+
+    private int[] indexes = EMPTY;
+    private int[] counts = EMPTY;
+    private int size;
+    private long count;
+
+    public void add(int index) {
+        int i = Arrays.binarySearch(indexes, 0, size, index);
+        if (i >= 0) {
+            counts[i]++;
+        } else {
+            insert(-i - 1, index);
+        }
+        count++;
+    }
+
+    /**
+     * @return whether a value was counted in the bucket.
+     */
+    public boolean remove(int index) {
+        int i = Arrays.binarySearch(indexes, 0, size, index);
+        if (i < 0) {
+            return false;
+        }
+        if (--counts[i] == 0) {
+            System.arraycopy(indexes, i + 1, indexes, i, size - i - 1);
+            System.arraycopy(counts, i + 1, counts, i, size - i - 1);
+            size--;
+        }
+        count--;
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long byteSize() {
+        return 56 + 8L * indexes.length;
+    }
+
+    /**
+     * Add the counts of this sketch to a dense histogram, growing it when needed.
+     *
+     * @return the histogram, or its grown copy.
+     */
+    long[] addTo(long[] histogram) {
+        if (size > 0 && indexes[size - 1] >= histogram.length) {
+            histogram = Arrays.copyOf(histogram, Math.max(indexes[size - 1] + 1, histogram.length * 2));
+        }
+        for (int i = 0; i < size; i++) {
+            histogram[indexes[i]] += counts[i];
+        }
+        return histogram;
+    }
+
+    private void insert(int at, int index) {
+        if (size == indexes.length) {
+            int capacity = Math.max(4, size + (size >> 1));
+            indexes = Arrays.copyOf(indexes, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        System.arraycopy(indexes, at, indexes, at + 1, size - at);
+        System.arraycopy(counts, at, counts, at + 1, size - at);
+        indexes[at] = index;
+        counts[at] = 1;
+        size++;
+    }
+}
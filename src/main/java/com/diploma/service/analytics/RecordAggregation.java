@@ -0,0 +1,140 @@
+package com.diploma.service.analytics;
+
+import com.diploma.service.dto.RecordAggregateDTO;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Heart rates and sugar levels of records aggregated per day, month, user, or as a whole.
+ * <p>
+ * Day and month groups are resolved by an offset into the day range of the query; user groups through a
+ * {@link LongIntHashMap}.
+ */
+public class RecordAggregation implements PartialAggregate<RecordAggregation> {
+
+    private final GroupBy groupBy;
+    private final int fromDay;
+    // group of each day of the range, for months
+    private final int[] monthOfDay;
+    private final LongIntHashMap userGroups;
+    private final Accumulators accumulators;
+    private long[] groupUserIds;
+    private int groups;
+
+    public RecordAggregation(RecordAnalyticsQuery query) {
+        this.groupBy = query.getGroupBy();
+        this.fromDay = query.getFromDay();
+        switch (groupBy) {
+            case DAY:
+                groups = query.getToDay() - fromDay + 1;
+                monthOfDay = null;
+                userGroups = null;
+                accumulators = new Accumulators(groups);
+                break;
+            case MONTH:
+                monthOfDay = new int[query.getToDay() - fromDay + 1];
+                YearMonth first = YearMonth.from(LocalDate.ofEpochDay(fromDay));
+                for (int day = 0; day < monthOfDay.length; day++) {
+                    YearMonth month = YearMonth.from(LocalDate.ofEpochDay(fromDay + day));
+                    monthOfDay[day] = (int) first.until(month, ChronoUnit.MONTHS);
+                }
+                groups = monthOfDay[monthOfDay.length - 1] + 1;
+                userGroups = null;
+                accumulators = new Accumulators(groups);
+                break;
+            case USER:
+                monthOfDay = null;
+                userGroups = new LongIntHashMap(256);
+                groupUserIds = new long[256];
+                accumulators = new Accumulators(256);
+                break;
+            default:
+                groups = 1;
+                monthOfDay = null;
+                userGroups = null;
+                accumulators = new Accumulators(1);
+        }
+    }
+
+    @Override
+    public void add(long userId, int epochDay, int heartRate, short sugarLevelTenths) {
+        accumulators.add(group(userId, epochDay), heartRate, sugarLevelTenths);
+    }
+
+    @Override
+    public void merge(RecordAggregation other) {
+        for (int g = 0; g < other.groups; g++) {
+            if (!other.accumulators.isEmpty(g)) {
+                int group = groupBy == GroupBy.USER ? userGroup(other.groupUserIds[g]) : g;
+                accumulators.merge(group, other.accumulators, g);
+            }
+        }
+    }
+
+    /**
+     * @param limit the maximum number of groups.
+     * @return the non-empty groups in the order of their key.
+     */
+    public List<RecordAggregateDTO> toResult(int limit) {
+        Integer[] order = new Integer[groups];
+        for (int g = 0; g < groups; g++) {
+            order[g] = g;
+        }
+        if (groupBy == GroupBy.USER) {
+            Arrays.sort(order, (a, b) -> Long.compare(groupUserIds[a], groupUserIds[b]));
+        }
+        List<RecordAggregateDTO> result = new ArrayList<>();
+        for (int i = 0; i < groups && result.size() < limit; i++) {
+            int g = order[i];
+            if (!accumulators.isEmpty(g)) {
+                result.add(accumulators.toDTO(g, key(g)));
+            }
+        }
+        return result;
+    }
+
+    private int group(long userId, int epochDay) {
+        switch (groupBy) {
+            case DAY:
+                return epochDay - fromDay;
+            case MONTH:
+                return monthOfDay[epochDay - fromDay];
+            case USER:
+                return userGroup(userId);
+            default:
+                return 0;
+        }
+    }
+
+    private int userGroup(long userId) {
+        int group = userGroups.get(userId);
+        if (group == LongIntHashMap.MISSING) {
+            if (groups == accumulators.capacity()) {
+                accumulators.grow(groups * 2);
+                groupUserIds = Arrays.copyOf(groupUserIds, groups * 2);
+            }
+            group = groups++;
+            userGroups.put(userId, group);
+            groupUserIds[group] = userId;
+        }
+        return group;
+    }
+
+    private String key(int group) {
+        switch (groupBy) {
+            case DAY:
+                return LocalDate.ofEpochDay(fromDay + group).toString();
+            case MONTH:
+                return YearMonth.from(LocalDate.ofEpochDay(fromDay)).plusMonths(group).toString();
+            case USER:
+                return Long.toString(groupUserIds[group]);
+            default:
+                return "all";
+        }
+    }
+}
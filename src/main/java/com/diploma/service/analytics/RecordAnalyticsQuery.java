@@ -0,0 +1,39 @@
+package com.diploma.service.analytics;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Filters and grouping of an analytical query over the {@link RecordColumnStore}, in the units of its columns.
+ * <p>
+ * Every bound is inclusive; a record missing a value never matches a filter on that value.
+ */
+@Value
+@Builder
+public class RecordAnalyticsQuery {
+
+    int fromDay;
+    int toDay;
+    /**
+     * The only user to aggregate, or {@code null} for all users.
+     */
+    Long userId;
+    @Builder.Default
+    int heartRateMin = Integer.MIN_VALUE;
+    @Builder.Default
+    int heartRateMax = Integer.MAX_VALUE;
+    @Builder.Default
+    int sugarLevelTenthsMin = Integer.MIN_VALUE;
+    @Builder.Default
+    int sugarLevelTenthsMax = Integer.MAX_VALUE;
+    @Builder.Default
+    GroupBy groupBy = GroupBy.NONE;
+
+    public boolean filtersHeartRate() {
+        return heartRateMin != Integer.MIN_VALUE || heartRateMax != Integer.MAX_VALUE;
+    }
+
+    public boolean filtersSugarLevel() {
+        return sugarLevelTenthsMin != Integer.MIN_VALUE || sugarLevelTenthsMax != Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,258 @@
+package com.diploma.service.analytics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records held column by column in primitive arrays, in chunks of {@value #CHUNK_SIZE} rows.
+ * <p>
+ * A row takes 26 bytes of columns (id, user id, epoch day, heart rate, sugar level in tenths) plus about 18 to 36
+ * bytes in the id index used by updates and deletes, against a few hundred bytes for a hydrated {@code Record} with
+ * its boxed fields. Deleted rows are only marked in a per-chunk bitmap until they make up a quarter of the store,
+ * which is then compacted. Each chunk keeps the range of its days so that scans skip chunks outside a date filter.
+ * <p>
+ * Rows added and removed are reported to an optional {@link RowListener}, so that summaries derived from the rows
+ * follow every change, including the replaced values of an upsert. The store is not thread-safe.
+ */
+public class RecordColumnStore {
+
+    public static final int CHUNK_SIZE = 1 << 14;
+    public static final int NO_HEART_RATE = Integer.MIN_VALUE;
+    public static final short NO_SUGAR_LEVEL = Short.MIN_VALUE;
+
+    private List<Chunk> chunks = new ArrayList<>();
+    private final LongIntHashMap rowsById = new LongIntHashMap(CHUNK_SIZE);
+    private final RowListener listener;
+    private int rows;
+    private int deleted;
+
+    public RecordColumnStore() {
+        this(null);
+    }
+
+    public RecordColumnStore(RowListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Insert a record, or replace the values of the record with the same id.
+     */
+    public void upsert(long id, long userId, int epochDay, int heartRate, short sugarLevelTenths) {
+        int row = rowsById.get(id);
+        if (row == LongIntHashMap.MISSING) {
+            if (rows == chunks.size() * CHUNK_SIZE) {
+                chunks.add(new Chunk());
+            }
+            row = rows++;
+            rowsById.put(id, row);
+        } else {
+            removed(chunks.get(row / CHUNK_SIZE), row % CHUNK_SIZE);
+        }
+        chunks.get(row / CHUNK_SIZE).set(row % CHUNK_SIZE, id, userId, epochDay, heartRate, sugarLevelTenths);
+        if (listener != null) {
+            listener.added(userId, epochDay, heartRate, sugarLevelTenths);
+        }
+    }
+
+    /**
+     * @return whether the record was present.
+     */
+    public boolean remove(long id) {
+        int row = rowsById.remove(id);
+        if (row == LongIntHashMap.MISSING) {
+            return false;
+        }
+        removed(chunks.get(row / CHUNK_SIZE), row % CHUNK_SIZE);
+        markDeleted(row);
+        compactIfSparse();
+        return true;
+    }
+
+    /**
+     * Remove every record of a user, in one pass over the user id column.
+     *
+     * @return the number of removed records.
+     */
+    public int removeUser(long userId) {
+        int removed = 0;
+        for (int c = 0; c < chunks.size(); c++) {
+            Chunk chunk = chunks.get(c);
+            for (int i = 0; i < chunk.size; i++) {
+                if (chunk.userIds[i] == userId && !chunk.isDeleted(i)) {
+                    rowsById.remove(chunk.ids[i]);
+                    removed(chunk, i);
+                    markDeleted(c * CHUNK_SIZE + i);
+                    removed++;
+                }
+            }
+        }
+        compactIfSparse();
+        return removed;
+    }
+
+    /**
+     * Remove every record created within a range of days, in one pass over the day column.
+     *
+     * @param fromDay the first day removed.
+     * @param toDay   the first day kept after the range.
+     * @return the number of removed records.
+     */
+    public int removeBetween(int fromDay, int toDay) {
+        int removed = 0;
+        for (int c = 0; c < chunks.size(); c++) {
+            Chunk chunk = chunks.get(c);
+            if (chunk.size == 0 || chunk.minDay >= toDay || chunk.maxDay < fromDay) {
+                continue;
+            }
+            for (int i = 0; i < chunk.size; i++) {
+                if (chunk.days[i] >= fromDay && chunk.days[i] < toDay && !chunk.isDeleted(i)) {
+                    rowsById.remove(chunk.ids[i]);
+                    removed(chunk, i);
+                    markDeleted(c * CHUNK_SIZE + i);
+                    removed++;
+                }
+            }
+        }
+        compactIfSparse();
+        return removed;
+    }
+
+    public void clear() {
+        chunks = new ArrayList<>();
+        rowsById.clear();
+        rows = 0;
+        deleted = 0;
+    }
+
+    /**
+     * @return the number of live records.
+     */
+    public int size() {
+        return rows - deleted;
+    }
+
+    public int chunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Pass the live rows of one chunk matching the record filters of a query to an aggregate; chunks are
+     * independent, so they may be scanned by concurrent readers as long as no writer runs.
+     */
+    public void scan(int chunkIndex, RecordAnalyticsQuery query, PartialAggregate<?> aggregate) {
+        Chunk chunk = chunks.get(chunkIndex);
+        if (chunk.size == 0 || chunk.maxDay < query.getFromDay() || chunk.minDay > query.getToDay()) {
+            return;
+        }
+        int fromDay = query.getFromDay();
+        int toDay = query.getToDay();
+        boolean filtersUser = query.getUserId() != null;
+        long userId = filtersUser ? query.getUserId() : 0;
+        boolean filtersHeartRate = query.filtersHeartRate();
+        int heartRateMin = query.getHeartRateMin();
+        int heartRateMax = query.getHeartRateMax();
+        boolean filtersSugarLevel = query.filtersSugarLevel();
+        int sugarLevelMin = query.getSugarLevelTenthsMin();
+        int sugarLevelMax = query.getSugarLevelTenthsMax();
+        long[] userIds = chunk.userIds;
+        int[] days = chunk.days;
+        int[] heartRates = chunk.heartRates;
+        short[] sugarLevels = chunk.sugarLevelTenths;
+        long[] deletedBits = chunk.deleted;
+        for (int i = 0; i < chunk.size; i++) {
+            int day = days[i];
+            if (day < fromDay || day > toDay
+                    || (filtersUser && userIds[i] != userId)
+                    || (deletedBits[i >>> 6] & (1L << i)) != 0) {
+                continue;
+            }
+            int heartRate = heartRates[i];
+            if (filtersHeartRate && (heartRate == NO_HEART_RATE || heartRate < heartRateMin || heartRate > heartRateMax)) {
+                continue;
+            }
+            short sugarLevel = sugarLevels[i];
+            if (filtersSugarLevel && (sugarLevel == NO_SUGAR_LEVEL || sugarLevel < sugarLevelMin || sugarLevel > sugarLevelMax)) {
+                continue;
+            }
+            aggregate.add(userIds[i], day, heartRate, sugarLevel);
+        }
+    }
+
+    private void removed(Chunk chunk, int i) {
+        if (listener != null) {
+            listener.removed(chunk.userIds[i], chunk.days[i], chunk.heartRates[i], chunk.sugarLevelTenths[i]);
+        }
+    }
+
+    private void markDeleted(int row) {
+        chunks.get(row / CHUNK_SIZE).markDeleted(row % CHUNK_SIZE);
+        deleted++;
+    }
+
+    private void compactIfSparse() {
+        if (deleted < CHUNK_SIZE || deleted * 4L < rows) {
+            return;
+        }
+        List<Chunk> live = new ArrayList<>();
+        rowsById.clear();
+        int liveRows = 0;
+        for (Chunk chunk : chunks) {
+            for (int i = 0; i < chunk.size; i++) {
+                if (chunk.isDeleted(i)) {
+                    continue;
+                }
+                if (liveRows == live.size() * CHUNK_SIZE) {
+                    live.add(new Chunk());
+                }
+                live.get(liveRows / CHUNK_SIZE).set(liveRows % CHUNK_SIZE, chunk.ids[i], chunk.userIds[i],
+                        chunk.days[i], chunk.heartRates[i], chunk.sugarLevelTenths[i]);
+                rowsById.put(chunk.ids[i], liveRows);
+                liveRows++;
+            }
+        }
+        chunks = live;
+        rows = liveRows;
+        deleted = 0;
+    }
+
+    /**
+     * Receives the values of the rows added to and removed from a store; {@link #clear()} is not reported.
+     */
+    public interface RowListener {
+
+        void added(long userId, int epochDay, int heartRate, short sugarLevelTenths);
+
+        void removed(long userId, int epochDay, int heartRate, short sugarLevelTenths);
+    }
+
+    private static final class Chunk {
+        private final long[] ids = new long[CHUNK_SIZE];
+        private final long[] userIds = new long[CHUNK_SIZE];
+        private final int[] days = new int[CHUNK_SIZE];
+        private final int[] heartRates = new int[CHUNK_SIZE];
+        private final short[] sugarLevelTenths = new short[CHUNK_SIZE];
+        private final long[] deleted = new long[CHUNK_SIZE / 64];
+        private int size;
+        private int minDay = Integer.MAX_VALUE;
+        private int maxDay = Integer.MIN_VALUE;
+
+        private void set(int i, long id, long userId, int epochDay, int heartRate, short sugarLevel) {
+            ids[i] = id;
+            userIds[i] = userId;
+            days[i] = epochDay;
+            heartRates[i] = heartRate;
+            sugarLevelTenths[i] = sugarLevel;
+            size = Math.max(size, i + 1);
+            minDay = Math.min(minDay, epochDay);
+            maxDay = Math.max(maxDay, epochDay);
+        }
+
+        private boolean isDeleted(int i) {
+            return (deleted[i >>> 6] & (1L << i)) != 0;
+        }
+
+        private void markDeleted(int i) {
+            deleted[i >>> 6] |= 1L << i;
+        }
+    }
+}
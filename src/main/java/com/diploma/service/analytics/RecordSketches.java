@@ -0,0 +1,148 @@
+package com.diploma.service.analytics;
+
+import com.diploma.domain.enumeration.RollupBucket;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * A heart rate and a sugar level {@link QuantileSketch} per user and {@link RollupBucket}, following the rows of a
+ * {@link RecordColumnStore} as its {@link RecordColumnStore.RowListener}.
+ * <p>
+ * Quantiles over any set of users and range of buckets are read by merging their sketches, which costs one pass
+ * over the distinct buckets of each sketch instead of one over every record. Ranges are widened to whole buckets.
+ * Sugar levels are counted in tenths. The sketches are not thread-safe.
+ */
+public class RecordSketches implements RecordColumnStore.RowListener {
+
+    private final LogLinearScale scale;
+    private final RollupBucket bucket;
+    private final Map<Long, TreeMap<Integer, Sketches>> users = new HashMap<>();
+    private int buckets;
+
+    public RecordSketches(LogLinearScale scale, RollupBucket bucket) {
+        this.scale = scale;
+        this.bucket = bucket;
+    }
+
+    @Override
+    public void added(long userId, int epochDay, int heartRate, short sugarLevelTenths) {
+        Sketches sketches = users.computeIfAbsent(userId, id -> new TreeMap<>())
+                .computeIfAbsent(bucketStart(epochDay), start -> {
+                    buckets++;
+                    return new Sketches();
+                });
+        if (heartRate != RecordColumnStore.NO_HEART_RATE) {
+            sketches.heartRate.add(scale.index(heartRate));
+        }
+        if (sugarLevelTenths != RecordColumnStore.NO_SUGAR_LEVEL) {
+            sketches.sugarLevel.add(scale.index(sugarLevelTenths));
+        }
+    }
+
+    @Override
+    public void removed(long userId, int epochDay, int heartRate, short sugarLevelTenths) {
+        TreeMap<Integer, Sketches> userBuckets = users.get(userId);
+        int start = bucketStart(epochDay);
+        Sketches sketches = userBuckets == null ? null : userBuckets.get(start);
+        if (sketches == null) {
+            return;
+        }
+        if (heartRate != RecordColumnStore.NO_HEART_RATE) {
+            sketches.heartRate.remove(scale.index(heartRate));
+        }
+        if (sugarLevelTenths != RecordColumnStore.NO_SUGAR_LEVEL) {
+            sketches.sugarLevel.remove(scale.index(sugarLevelTenths));
+        }
+        if (sketches.heartRate.isEmpty() && sketches.sugarLevel.isEmpty()) {
+            userBuckets.remove(start);
+            buckets--;
+            if (userBuckets.isEmpty()) {
+                users.remove(userId);
+            }
+        }
+    }
+
+    /**
+     * Merge the sketches of some users over the buckets overlapping a range of days.
+     *
+     * @param userIds    the users, or {@code null} for every user.
+     * @param fromDay    the first day of the range.
+     * @param toDay      the last day of the range.
+     * @param heartRate  receives the heart rate sketches.
+     * @param sugarLevel receives the sugar level sketches, in tenths.
+     */
+    public void merge(Collection<Long> userIds, int fromDay, int toDay, MergedSketch heartRate, MergedSketch sugarLevel) {
+        int fromStart = bucketStart(fromDay);
+        int toStart = bucketStart(toDay);
+        if (userIds == null) {
+            for (TreeMap<Integer, Sketches> userBuckets : users.values()) {
+                merge(userBuckets, fromStart, toStart, heartRate, sugarLevel);
+            }
+            return;
+        }
+        for (Long userId : userIds) {
+            TreeMap<Integer, Sketches> userBuckets = users.get(userId);
+            if (userBuckets != null) {
+                merge(userBuckets, fromStart, toStart, heartRate, sugarLevel);
+            }
+        }
+    }
+
+    public int bucketStart(int epochDay) {
+        return (int) bucket.start(LocalDate.ofEpochDay(epochDay)).toEpochDay();
+    }
+
+    /**
+     * @return the last day of the bucket containing a day.
+     */
+    public int bucketEnd(int epochDay) {
+        return (int) bucket.next(bucket.start(LocalDate.ofEpochDay(epochDay))).toEpochDay() - 1;
+    }
+
+    public LogLinearScale getScale() {
+        return scale;
+    }
+
+    /**
+     * @return the number of user buckets holding sketches.
+     */
+    public int size() {
+        return buckets;
+    }
+
+    public long byteSize() {
+        long bytes = 0;
+        for (TreeMap<Integer, Sketches> userBuckets : users.values()) {
+            // tree map and map entries, boxed keys
+            bytes += 96;
+            for (Sketches sketches : userBuckets.values()) {
+                bytes += 72 + sketches.heartRate.byteSize() + sketches.sugarLevel.byteSize();
+            }
+        }
+        return bytes;
+    }
+
+    public void clear() {
+        users.clear();
+        buckets = 0;
+    }
+
+    private static void merge(TreeMap<Integer, Sketches> userBuckets, int fromStart, int toStart,
+                              MergedSketch heartRate, MergedSketch sugarLevel) {
+        NavigableMap<Integer, Sketches> range = userBuckets.subMap(fromStart, true, toStart, true);
+        for (Sketches sketches : range.values()) {
+            heartRate.merge(sketches.heartRate);
+            sugarLevel.merge(sketches.sugarLevel);
+        }
+    }
+
+    private static final class Sketches {
+        private final QuantileSketch heartRate = new QuantileSketch();
+        private final QuantileSketch sugarLevel = new QuantileSketch();
+    }
+}
@@ -0,0 +1,19 @@
+package com.diploma.service.anomaly;
+
+/**
+ * The rule a reading broke.
+ */
+public enum AnomalyRule {
+    /**
+     * The reading is outside the configured absolute bounds.
+     */
+    THRESHOLD,
+    /**
+     * The reading is more than {@code z-score-threshold} standard deviations away from the mean of the user.
+     */
+    Z_SCORE,
+    /**
+     * The EWMA of the user has just moved more than {@code drift-threshold} standard deviations away from its mean.
+     */
+    DRIFT
+}
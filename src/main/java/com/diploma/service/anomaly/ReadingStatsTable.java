@@ -0,0 +1,215 @@
+package com.diploma.service.anomaly;
+
+import java.util.Arrays;
+
+/**
+ * Running statistics of the readings of each user, stored in primitive arrays keyed by user id.
+ * <p>
+ * Each tracked user takes one {@code long} key and {@value #STRIDE} {@code double} values in dense arrays, plus
+ * two to four {@code int} entries of an open-addressing index kept at most half full: 80 to 88 bytes, and up to
+ * twice as much right after the arrays have grown. At most {@code maxUsers} users are tracked; {@link #slot} refuses
+ * new users beyond that until {@link #remove} frees a slot. Removing a user moves the last slot into its own, so
+ * slots are only valid until the next removal.
+ * <p>
+ * Every update is constant time. The table is not thread-safe.
+ */
+public class ReadingStatsTable {
+
+    /**
+     * Number of values per metric: count, Welford mean, Welford sum of squared deviations, EWMA.
+     */
+    public static final int METRIC_STRIDE = 4;
+    public static final int STRIDE = 2 * METRIC_STRIDE;
+
+    private static final int COUNT = 0;
+    private static final int MEAN = 1;
+    private static final int M2 = 2;
+    private static final int EWMA = 3;
+    private static final int INITIAL_USERS = 1024;
+
+    private final int maxUsers;
+    private long[] keys;
+    private double[] values;
+    // slot + 1 of the user hashed to each position, 0 when empty
+    private int[] index;
+    private int size;
+
+    public ReadingStatsTable(int maxUsers) {
+        this.maxUsers = maxUsers;
+        int capacity = Math.min(INITIAL_USERS, maxUsers);
+        this.keys = new long[capacity];
+        this.values = new double[capacity * STRIDE];
+        this.index = new int[indexLength(capacity)];
+    }
+
+    /**
+     * Find the slot of a user, optionally adding it.
+     *
+     * @return the slot, or {@code -1} if the user is absent and is not or cannot be added.
+     */
+    public int slot(long userId, boolean create) {
+        int position = position(userId);
+        if (position >= 0) {
+            return index[position] - 1;
+        }
+        if (!create || size == maxUsers) {
+            return -1;
+        }
+        if (size == keys.length) {
+            grow();
+        }
+        int slot = size++;
+        keys[slot] = userId;
+        insert(userId, slot);
+        return slot;
+    }
+
+    public long count(int slot, int metric) {
+        return (long) values[slot * STRIDE + metric + COUNT];
+    }
+
+    public double mean(int slot, int metric) {
+        return values[slot * STRIDE + metric + MEAN];
+    }
+
+    /**
+     * @return the sample standard deviation, {@code 0} below two readings.
+     */
+    public double standardDeviation(int slot, int metric) {
+        long count = count(slot, metric);
+        return count < 2 ? 0 : Math.sqrt(values[slot * STRIDE + metric + M2] / (count - 1));
+    }
+
+    public double ewma(int slot, int metric) {
+        return values[slot * STRIDE + metric + EWMA];
+    }
+
+    /**
+     * Add a reading to the statistics of a metric of a user.
+     *
+     * @param metric the offset of the metric, a multiple of {@link #METRIC_STRIDE}.
+     * @param alpha  the smoothing factor of the EWMA.
+     */
+    public void add(int slot, int metric, double value, double alpha) {
+        int base = slot * STRIDE + metric;
+        double count = values[base + COUNT] + 1;
+        double delta = value - values[base + MEAN];
+        values[base + COUNT] = count;
+        values[base + MEAN] += delta / count;
+        values[base + M2] += delta * (value - values[base + MEAN]);
+        values[base + EWMA] = count == 1 ? value : values[base + EWMA] + alpha * (value - values[base + EWMA]);
+    }
+
+    /**
+     * Take a reading back from the statistics of a metric of a user. The EWMA cannot be unwound and is kept, unless
+     * no reading is left.
+     *
+     * @param metric the offset of the metric, a multiple of {@link #METRIC_STRIDE}.
+     */
+    public void subtract(int slot, int metric, double value) {
+        int base = slot * STRIDE + metric;
+        double count = values[base + COUNT] - 1;
+        if (count <= 0) {
+            Arrays.fill(values, base, base + METRIC_STRIDE, 0);
+            return;
+        }
+        double delta = value - values[base + MEAN];
+        values[base + COUNT] = count;
+        values[base + MEAN] -= delta / count;
+        values[base + M2] = Math.max(0, values[base + M2] - delta * (value - values[base + MEAN]));
+    }
+
+    /**
+     * @return whether no reading of any metric is left for the user.
+     */
+    public boolean isEmpty(int slot) {
+        for (int metric = 0; metric < STRIDE; metric += METRIC_STRIDE) {
+            if (count(slot, metric) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove a user and free its slot.
+     *
+     * @return whether the user was tracked.
+     */
+    public boolean remove(long userId) {
+        int position = position(userId);
+        if (position < 0) {
+            return false;
+        }
+        int slot = index[position] - 1;
+        delete(position);
+        int last = --size;
+        if (slot != last) {
+            index[position(keys[last])] = slot + 1;
+            keys[slot] = keys[last];
+            System.arraycopy(values, last * STRIDE, values, slot * STRIDE, STRIDE);
+        }
+        Arrays.fill(values, last * STRIDE, (last + 1) * STRIDE, 0);
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        int capacity = (int) Math.min((long) keys.length * 2, maxUsers);
+        keys = Arrays.copyOf(keys, capacity);
+        values = Arrays.copyOf(values, capacity * STRIDE);
+        index = new int[indexLength(capacity)];
+        for (int slot = 0; slot < size; slot++) {
+            insert(keys[slot], slot);
+        }
+    }
+
+    private int position(long userId) {
+        int mask = index.length - 1;
+        for (int i = mix(userId) & mask; ; i = (i + 1) & mask) {
+            int entry = index[i];
+            if (entry == 0) {
+                return -1;
+            }
+            if (keys[entry - 1] == userId) {
+                return i;
+            }
+        }
+    }
+
+    // backward-shift deletion, so that no probe sequence is broken and no tombstone is needed
+    private void delete(int position) {
+        int mask = index.length - 1;
+        int hole = position;
+        for (int i = (hole + 1) & mask; index[i] != 0; i = (i + 1) & mask) {
+            int home = mix(keys[index[i] - 1]) & mask;
+            // the entry may fill the hole unless its home lies cyclically in (hole, i]
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                index[hole] = index[i];
+                hole = i;
+            }
+        }
+        index[hole] = 0;
+    }
+
+    private void insert(long userId, int slot) {
+        int mask = index.length - 1;
+        int i = mix(userId) & mask;
+        while (index[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        index[i] = slot + 1;
+    }
+
+    private static int indexLength(int capacity) {
+        return Integer.highestOneBit(Math.max(capacity, 1)) * 4;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,27 @@
+package com.diploma.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Aggregated heart rates and sugar levels of one group of records: a day, a month, a user, or {@code all}.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RecordAggregateDTO {
+
+    private String group;
+    private Long records;
+    private Long heartRateCount;
+    private Integer heartRateMin;
+    private Integer heartRateMax;
+    private Double heartRateAvg;
+    private Long sugarLevelCount;
+    private Double sugarLevelMin;
+    private Double sugarLevelMax;
+    private Double sugarLevelAvg;
+}
@@ -0,0 +1,37 @@
+package com.diploma.service.dto;
+
+import com.diploma.service.anomaly.AnomalyRule;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * An abnormal reading, with the statistics of the user it was compared to.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RecordAlertDTO {
+
+    @JsonIgnore
+    private Long userId;
+    private Long recordId;
+    private LocalDate dateCreated;
+    /**
+     * {@code heartRate} or {@code sugarLevel}.
+     */
+    private String metric;
+    private double value;
+    private AnomalyRule rule;
+    private long count;
+    private double mean;
+    private double standardDeviation;
+    private double ewma;
+    private Instant detectedAt;
+}
@@ -0,0 +1,31 @@
+package com.diploma.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RecordBatchItemDTO {
+
+    public enum Status {
+        CREATED,
+        REJECTED
+    }
+
+    private Integer index;
+    private Status status;
+    private Long id;
+    private List<String> errors;
+
+    public static RecordBatchItemDTO created(int index, Long id) {
+        return new RecordBatchItemDTO(index, Status.CREATED, id, List.of());
+    }
+
+    public static RecordBatchItemDTO rejected(int index, List<String> errors) {
+        return new RecordBatchItemDTO(index, Status.REJECTED, null, errors);
+    }
+}
@@ -0,0 +1,17 @@
+package com.diploma.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RecordBatchResultDTO {
+
+    private Integer created;
+    private Integer rejected;
+    private List<RecordBatchItemDTO> items;
+}
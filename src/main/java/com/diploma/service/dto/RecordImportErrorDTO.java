@@ -0,0 +1,16 @@
+package com.diploma.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RecordImportErrorDTO {
+
+    private Long line;
+    private List<String> errors;
+}
@@ -0,0 +1,26 @@
+package com.diploma.service.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class RecordImportReportDTO {
+
+    private long processed;
+    private long imported;
+    private long rejected;
+    private int batches;
+    /**
+     * The last line of the last batch that was committed, {@code 0} if none was.
+     */
+    private long lastCommittedLine;
+    /**
+     * The first rejected lines; see {@link #errorsTruncated} for whether more were dropped.
+     */
+    private List<RecordImportErrorDTO> errors = new ArrayList<>();
+    private boolean errorsTruncated;
+}
@@ -0,0 +1,30 @@
+package com.diploma.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Heart rate and sugar level quantiles of the records of some users, read from sketches.
+ * <p>
+ * The range is the requested one widened to whole sketch buckets; quantiles are keyed by their requested value and
+ * are within {@code relativeError} of the exact nearest-rank quantile, or {@code null} without any value.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RecordPercentilesDTO {
+
+    private LocalDate from;
+    private LocalDate to;
+    private Double relativeError;
+    private Long heartRateCount;
+    private Map<String, Double> heartRate;
+    private Long sugarLevelCount;
+    private Map<String, Double> sugarLevel;
+}
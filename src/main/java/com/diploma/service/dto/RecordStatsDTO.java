@@ -0,0 +1,42 @@
+package com.diploma.service.dto;
+
+import com.diploma.domain.RecordRollup;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RecordStatsDTO {
+
+    private LocalDate bucketStart;
+    private Long heartRateCount;
+    private Integer heartRateMin;
+    private Integer heartRateMax;
+    private Double heartRateAvg;
+    private Long sugarLevelCount;
+    private Double sugarLevelMin;
+    private Double sugarLevelMax;
+    private Double sugarLevelAvg;
+
+    public static RecordStatsDTO of(RecordRollup rollup) {
+        return RecordStatsDTO.builder()
+                .bucketStart(rollup.getBucketStart())
+                .heartRateCount(rollup.getHeartRateCount())
+                .heartRateMin(rollup.getHeartRateMin())
+                .heartRateMax(rollup.getHeartRateMax())
+                .heartRateAvg(rollup.getHeartRateCount() == 0 ? null
+                        : (double) rollup.getHeartRateSum() / rollup.getHeartRateCount())
+                .sugarLevelCount(rollup.getSugarLevelCount())
+                .sugarLevelMin(rollup.getSugarLevelMin())
+                .sugarLevelMax(rollup.getSugarLevelMax())
+                .sugarLevelAvg(rollup.getSugarLevelCount() == 0 ? null
+                        : rollup.getSugarLevelSumTenths() / 10.0 / rollup.getSugarLevelCount())
+                .build();
+    }
+}
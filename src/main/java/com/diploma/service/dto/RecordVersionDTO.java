@@ -0,0 +1,17 @@
+package com.diploma.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The validator of a record, loaded without the record itself to answer conditional requests.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RecordVersionDTO {
+
+    private Long id;
+    private Long version;
+}
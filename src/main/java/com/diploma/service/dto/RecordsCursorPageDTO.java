@@ -0,0 +1,20 @@
+package com.diploma.service.dto;
+
+import com.diploma.domain.Record;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RecordsCursorPageDTO {
+
+    private List<Record> content;
+    /**
+     * Token to pass as {@code cursor} to get the next page, or {@code null} on the last page.
+     */
+    private String nextCursor;
+}
@@ -6,6 +6,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDate;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -13,6 +15,8 @@ public class RecordsParamsDTO {
     private Long userId;
     private Integer offset;
     private Integer limit;
+    private LocalDate from;
+    private LocalDate to;
 
     public RecordsParams convertToRecordsParams() {
         RecordsParams.RecordsParamsBuilder parametersBuilder = RecordsParams.builder();
@@ -29,6 +33,9 @@ public class RecordsParamsDTO {
                         .limit(limit);
             }
         }
-        return parametersBuilder.build();
+        return parametersBuilder
+                .from(from)
+                .to(to)
+                .build();
     }
 }
@@ -0,0 +1,48 @@
+package com.diploma.service.dto;
+
+import com.diploma.domain.Record;
+import com.diploma.domain.User;
+import com.diploma.domain.enumeration.Gender;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * A {@link User} without its password and records.
+ * <p>
+ * {@code records} is only filled, with the latest records of the user, when a caller asks for them.
+ */
+@Data
+@NoArgsConstructor
+public class UserDTO {
+
+    private Long id;
+    private String name;
+    private String surname;
+    private String email;
+    private LocalDate birthDate;
+    private Gender gender;
+    private Double weight;
+    private String role;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<Record> records;
+
+    /**
+     * Constructor used by the JPQL and criteria projections.
+     */
+    public UserDTO(Long id, String name, String surname, String email, LocalDate birthDate, Gender gender,
+                   Double weight, String role) {
+        this.id = id;
+        this.name = name;
+        this.surname = surname;
+        this.email = email;
+        this.birthDate = birthDate;
+        this.gender = gender;
+        this.weight = weight;
+        this.role = role;
+    }
+}
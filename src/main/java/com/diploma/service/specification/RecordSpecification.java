@@ -9,8 +9,6 @@ import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
-import java.util.ArrayList;
-import java.util.List;
 
 @RequiredArgsConstructor
 public class RecordSpecification implements Specification<Record> {
@@ -23,11 +21,19 @@ public class RecordSpecification implements Specification<Record> {
         Long userId = recordsParams.getUserId();
 
         if (userId != null) {
-            predicate = criteriaBuilder.equal(root.get("user_id"), recordsParams.getUserId());
+            predicate = criteriaBuilder.equal(root.get("userId"), recordsParams.getUserId());
 
         } else {
             predicate = criteriaBuilder.conjunction();
         }
+        if (recordsParams.getFrom() != null) {
+            predicate = criteriaBuilder.and(predicate,
+                    criteriaBuilder.greaterThanOrEqualTo(root.get("dateCreated"), recordsParams.getFrom()));
+        }
+        if (recordsParams.getTo() != null) {
+            predicate = criteriaBuilder.and(predicate,
+                    criteriaBuilder.lessThanOrEqualTo(root.get("dateCreated"), recordsParams.getTo()));
+        }
 
         return predicate;
     }
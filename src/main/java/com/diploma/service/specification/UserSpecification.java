@@ -7,37 +7,92 @@ import org.springframework.data.jpa.domain.Specification;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Order;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
+/**
+ * Case-insensitive substring search of users by name and/or surname.
+ * <p>
+ * Predicates compare {@code lower(column)} so that they are served by the trigram indexes of migration V7.
+ * Unless the query is a count, results are ranked: prefix matches first, then by decreasing trigram
+ * similarity to the keywords, then by id to keep pages stable.
+ */
 @RequiredArgsConstructor
 public class UserSpecification implements Specification<User> {
 
+    private static final char ESCAPE = '\\';
+
     private final SearchParameters searchParameters;
 
     @Override
     public Predicate toPredicate(final Root<User> root, final CriteriaQuery<?> query, final CriteriaBuilder criteriaBuilder) {
-        List<Predicate> predicates = new ArrayList<>();
-        String name = searchParameters.getNameKeyword();
-        String surname = searchParameters.getSurnameKeyword();
+        String name = normalize(searchParameters.getNameKeyword());
+        String surname = normalize(searchParameters.getSurnameKeyword());
 
         if (name == null && surname == null) {
-            Predicate predicate = criteriaBuilder.conjunction();
-            predicates.add(predicate);
+            if (!isCount(query)) {
+                query.orderBy(criteriaBuilder.asc(root.get("id")));
+            }
+            return criteriaBuilder.conjunction();
         }
 
-        if (name != null) {
-            Predicate predicateForName = criteriaBuilder.like(root.get("name"), "%" + name + "%");
-            predicates.add(predicateForName);
-        }
+        List<Predicate> predicates = new ArrayList<>();
+        List<Predicate> prefixes = new ArrayList<>();
+        List<Expression<Double>> similarities = new ArrayList<>();
+        addKeyword(root.get("name"), name, criteriaBuilder, predicates, prefixes, similarities);
+        addKeyword(root.get("surname"), surname, criteriaBuilder, predicates, prefixes, similarities);
 
-        if (surname != null) {
-            Predicate predicateForSurname = criteriaBuilder.like(root.get("surname"), "%" + name + "%");
-            predicates.add(predicateForSurname);
+        if (!isCount(query)) {
+            List<Order> orders = new ArrayList<>();
+            orders.add(criteriaBuilder.asc(criteriaBuilder.<Integer>selectCase()
+                    .when(criteriaBuilder.or(prefixes.toArray(Predicate[]::new)), 0)
+                    .otherwise(1)));
+            Expression<Double> similarity = similarities.stream().reduce(criteriaBuilder::sum).orElseThrow();
+            orders.add(criteriaBuilder.desc(similarity));
+            orders.add(criteriaBuilder.asc(root.get("id")));
+            query.orderBy(orders);
         }
 
         return criteriaBuilder.or(predicates.toArray(Predicate[]::new));
     }
+
+    private static void addKeyword(Expression<String> column, String keyword, CriteriaBuilder criteriaBuilder,
+                                   List<Predicate> predicates, List<Predicate> prefixes, List<Expression<Double>> similarities) {
+        if (keyword == null) {
+            return;
+        }
+        Expression<String> lowered = criteriaBuilder.lower(column);
+        String escaped = escapeLike(keyword);
+        predicates.add(criteriaBuilder.like(lowered, "%" + escaped + "%", ESCAPE));
+        prefixes.add(criteriaBuilder.like(lowered, escaped + "%", ESCAPE));
+        similarities.add(criteriaBuilder.function("similarity", Double.class, lowered, criteriaBuilder.literal(keyword)));
+    }
+
+    private static boolean isCount(CriteriaQuery<?> query) {
+        return Long.class.equals(query.getResultType()) || long.class.equals(query.getResultType());
+    }
+
+    private static String normalize(String keyword) {
+        if (keyword == null || keyword.isBlank()) {
+            return null;
+        }
+        return keyword.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String escapeLike(String keyword) {
+        StringBuilder escaped = new StringBuilder(keyword.length() + 4);
+        for (int i = 0; i < keyword.length(); i++) {
+            char c = keyword.charAt(i);
+            if (c == '%' || c == '_' || c == ESCAPE) {
+                escaped.append(ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
 }
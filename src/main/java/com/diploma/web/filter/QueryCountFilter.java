@@ -0,0 +1,100 @@
+package com.diploma.web.filter;
+
+import com.diploma.config.ApplicationProperties;
+import com.diploma.repository.sql.QueryCollector;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.web.util.OnCommittedResponseWrapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Counts the SQL statements and the JDBC time of each request.
+ * <p>
+ * The totals are sent back as {@code X-Query-Count} and {@code Server-Timing: db;dur=...} headers, written when
+ * the response gets committed. A warning naming the endpoint is logged when one statement is executed more than
+ * {@code application.sql.repeated-statement-threshold} times, the usual sign of an N+1 select.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    public static final String QUERY_COUNT_HEADER = "X-Query-Count";
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    private final ApplicationProperties applicationProperties;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        QueryCollector collector = QueryCollector.start();
+        HeaderWritingResponse wrappedResponse = new HeaderWritingResponse(response, collector);
+        try {
+            filterChain.doFilter(request, wrappedResponse);
+        } finally {
+            wrappedResponse.writeHeaders();
+            QueryCollector.stop();
+            checkRepeatedStatements(request, collector);
+        }
+    }
+
+    private void checkRepeatedStatements(HttpServletRequest request, QueryCollector collector) {
+        int threshold = applicationProperties.getSql().getRepeatedStatementThreshold();
+        if (threshold <= 0) {
+            return;
+        }
+        Map.Entry<String, Integer> mostRepeated = collector.getMostRepeated();
+        if (mostRepeated != null && mostRepeated.getValue() > threshold) {
+            log.warn("Possible N+1 select in {}: statement executed {} times ({} statements in total): {}",
+                    endpoint(request), mostRepeated.getValue(), collector.getCount(), mostRepeated.getKey());
+        }
+    }
+
+    private static String endpoint(HttpServletRequest request) {
+        Object handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+        if (handler instanceof HandlerMethod) {
+            HandlerMethod method = (HandlerMethod) handler;
+            return method.getBeanType().getSimpleName() + "." + method.getMethod().getName();
+        }
+        return request.getMethod() + " " + request.getRequestURI();
+    }
+
+    private class HeaderWritingResponse extends OnCommittedResponseWrapper {
+
+        private final QueryCollector collector;
+        private boolean headersWritten;
+
+        HeaderWritingResponse(HttpServletResponse response, QueryCollector collector) {
+            super(response);
+            this.collector = collector;
+        }
+
+        @Override
+        protected void onResponseCommitted() {
+            writeHeaders();
+        }
+
+        void writeHeaders() {
+            if (headersWritten || isCommitted() || !applicationProperties.getSql().isHeadersEnabled()) {
+                return;
+            }
+            headersWritten = true;
+            setHeader(QUERY_COUNT_HEADER, String.valueOf(collector.getCount()));
+            addHeader(SERVER_TIMING_HEADER, String.format(Locale.ROOT, "db;dur=%.1f;desc=\"%d statements\"",
+                    collector.getJdbcNanos() / 1_000_000.0, collector.getCount()));
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.diploma.web.rest;
+
+import com.diploma.domain.enumeration.Gender;
+import com.diploma.service.RecordAnalyticsService;
+import com.diploma.service.analytics.CohortQuery;
+import com.diploma.service.analytics.GroupBy;
+import com.diploma.service.analytics.RecordAnalyticsQuery;
+import com.diploma.service.dto.RecordAggregateDTO;
+import com.diploma.service.dto.RecordPercentilesDTO;
+import com.diploma.web.rest.errors.ProcessException;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * REST controller for analytical queries over the records of all users, for analysts and administrators.
+ * <p>
+ * Queries are answered from the in-memory columnar store of {@link RecordAnalyticsService}, not from the database.
+ * Each query runs under the id of its {@code queryId} parameter, or a generated one, returned in the
+ * {@code X-Query-Id} header; a running query is cancelled with {@code DELETE /queries/{queryId}}.
+ */
+@RestController
+@RequestMapping("/api/analytics")
+@RequiredArgsConstructor
+public class AnalyticsResource {
+
+    private static final int MAX_DAY_GROUPS = 3660;
+    private static final int MAX_MONTH_RANGE_DAYS = 36600;
+    private static final int MAX_GROUPS = 10000;
+    private static final int MAX_AGE_BAND_WIDTH = 100;
+    private static final String QUERY_ID_HEADER = "X-Query-Id";
+
+    private final Logger log = LoggerFactory.getLogger(AnalyticsResource.class);
+    private final RecordAnalyticsService recordAnalyticsService;
+
+    /**
+     * {@code GET  /records} : aggregate the records created within a range.
+     *
+     * @param from          the first creation day.
+     * @param to            the last creation day.
+     * @param groupBy       the grouping: {@code none}, {@code day}, {@code month} or {@code user}.
+     * @param userId        the only user to aggregate, optional.
+     * @param heartRateMin  the minimum heart rate of the aggregated records, optional.
+     * @param heartRateMax  the maximum heart rate of the aggregated records, optional.
+     * @param sugarLevelMin the minimum sugar level of the aggregated records, optional.
+     * @param sugarLevelMax the maximum sugar level of the aggregated records, optional.
+     * @param limit         the maximum number of groups.
+     * @param queryId       the id to cancel the query with, optional.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the non-empty groups in body,
+     * or with status {@code 400 (Bad Request)} if the parameters are not valid,
+     * or with status {@code 409 (Conflict)} if the query is cancelled or its id is already running,
+     * or with status {@code 503 (Service Unavailable)} while the store is loading or if the query timed out.
+     */
+    @GetMapping("/records")
+    public ResponseEntity<List<RecordAggregateDTO>> aggregateRecords(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                     @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                     @RequestParam(defaultValue = "none") String groupBy,
+                                                                     @RequestParam(required = false) Long userId,
+                                                                     @RequestParam(required = false) Integer heartRateMin,
+                                                                     @RequestParam(required = false) Integer heartRateMax,
+                                                                     @RequestParam(required = false) Double sugarLevelMin,
+                                                                     @RequestParam(required = false) Double sugarLevelMax,
+                                                                     @RequestParam(defaultValue = "1000") Integer limit,
+                                                                     @RequestParam(required = false) String queryId) {
+        log.debug("REST request to aggregate Records by {} from {} to {}", groupBy, from, to);
+        RecordAnalyticsQuery query = recordQuery(from, to, groupBy(groupBy, from, to), userId,
+                heartRateMin, heartRateMax, sugarLevelMin, sugarLevelMax);
+        if (limit < 1 || limit > MAX_GROUPS) {
+            throw new ProcessException("Limit should be between 1 and " + MAX_GROUPS, HttpStatus.BAD_REQUEST);
+        }
+        String id = queryId(queryId);
+        return ResponseEntity.ok()
+                .header(QUERY_ID_HEADER, id)
+                .body(recordAnalyticsService.aggregate(query, limit, id));
+    }
+
+    /**
+     * {@code GET  /cohorts} : aggregate the records created within a range by cohorts of users.
+     *
+     * @param from          the first creation day.
+     * @param to            the last creation day.
+     * @param genders       the accepted genders, comma separated, {@code unknown} for users without one, optional.
+     * @param weightMin     the minimum weight of the users, optional.
+     * @param weightMax     the maximum weight of the users, optional.
+     * @param ageMin        the minimum age of the users on the day of the record, optional.
+     * @param ageMax        the maximum age of the users on the day of the record, optional.
+     * @param groupBy       the grouping, comma separated: {@code gender} and/or {@code ageBand}, optional.
+     * @param ageBandWidth  the width of the age bands in years.
+     * @param heartRateMin  the minimum heart rate of the aggregated records, optional.
+     * @param heartRateMax  the maximum heart rate of the aggregated records, optional.
+     * @param sugarLevelMin the minimum sugar level of the aggregated records, optional.
+     * @param sugarLevelMax the maximum sugar level of the aggregated records, optional.
+     * @param queryId       the id to cancel the query with, optional.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the non-empty cohorts in body,
+     * or with status {@code 400 (Bad Request)} if the parameters are not valid,
+     * or with status {@code 409 (Conflict)} if the query is cancelled or its id is already running,
+     * or with status {@code 503 (Service Unavailable)} while the store is loading or if the query timed out.
+     */
+    @GetMapping("/cohorts")
+    public ResponseEntity<List<RecordAggregateDTO>> aggregateCohorts(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                     @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                     @RequestParam(required = false) List<String> genders,
+                                                                     @RequestParam(required = false) Double weightMin,
+                                                                     @RequestParam(required = false) Double weightMax,
+                                                                     @RequestParam(required = false) Integer ageMin,
+                                                                     @RequestParam(required = false) Integer ageMax,
+                                                                     @RequestParam(required = false) List<String> groupBy,
+                                                                     @RequestParam(defaultValue = "10") Integer ageBandWidth,
+                                                                     @RequestParam(required = false) Integer heartRateMin,
+                                                                     @RequestParam(required = false) Integer heartRateMax,
+                                                                     @RequestParam(required = false) Double sugarLevelMin,
+                                                                     @RequestParam(required = false) Double sugarLevelMax,
+                                                                     @RequestParam(required = false) String queryId) {
+        log.debug("REST request to aggregate cohorts by {} from {} to {}", groupBy, from, to);
+        if (from.isAfter(to)) {
+            throw new ProcessException("Invalid range for analytics", HttpStatus.BAD_REQUEST);
+        }
+        if (ageBandWidth < 1 || ageBandWidth > MAX_AGE_BAND_WIDTH) {
+            throw new ProcessException("Age band width should be between 1 and " + MAX_AGE_BAND_WIDTH, HttpStatus.BAD_REQUEST);
+        }
+        CohortQuery.CohortQueryBuilder query = CohortQuery.builder()
+                .records(recordQuery(from, to, GroupBy.NONE, null, heartRateMin, heartRateMax, sugarLevelMin, sugarLevelMax))
+                .genders(genders(genders))
+                .ageBandWidth(ageBandWidth);
+        if (weightMin != null) {
+            query.weightTenthsMin((int) Math.round(weightMin * 10));
+        }
+        if (weightMax != null) {
+            query.weightTenthsMax((int) Math.round(weightMax * 10));
+        }
+        if (ageMin != null) {
+            query.ageMin(ageMin);
+        }
+        if (ageMax != null) {
+            query.ageMax(ageMax);
+        }
+        if (groupBy != null) {
+            for (String value : groupBy) {
+                if ("gender".equalsIgnoreCase(value)) {
+                    query.byGender(true);
+                } else if ("ageband".equalsIgnoreCase(value)) {
+                    query.byAgeBand(true);
+                } else {
+                    throw new ProcessException("Invalid grouping: " + value, HttpStatus.BAD_REQUEST);
+                }
+            }
+        }
+        String id = queryId(queryId);
+        return ResponseEntity.ok()
+                .header(QUERY_ID_HEADER, id)
+                .body(recordAnalyticsService.aggregateCohorts(query.build(), id));
+    }
+
+    /**
+     * {@code GET  /percentiles} : get heart rate and sugar level percentiles of the records of some users, merged
+     * from their sketches.
+     *
+     * @param from      the first day of the range, widened to the start of its sketch bucket.
+     * @param to        the last day of the range, widened to the end of its sketch bucket.
+     * @param userIds   the users, comma separated, optional: every user by default.
+     * @param quantiles the quantiles, between {@code 0} and {@code 1}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the percentiles in body,
+     * or with status {@code 400 (Bad Request)} if the parameters are not valid,
+     * or with status {@code 503 (Service Unavailable)} while the store is loading.
+     */
+    @GetMapping("/percentiles")
+    public ResponseEntity<RecordPercentilesDTO> getPercentiles(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                               @RequestParam(required = false) List<Long> userIds,
+                                                               @RequestParam(defaultValue = "0.5,0.9,0.95,0.99") List<Double> quantiles) {
+        log.debug("REST request to get Record percentiles {} from {} to {}", quantiles, from, to);
+        if (userIds != null && (userIds.isEmpty() || userIds.size() > MAX_GROUPS)) {
+            throw new ProcessException("Between 1 and " + MAX_GROUPS + " users are expected", HttpStatus.BAD_REQUEST);
+        }
+        return ResponseEntity.ok(recordAnalyticsService.percentiles(userIds == null ? null : new HashSet<>(userIds),
+                from, to, quantiles));
+    }
+
+    /**
+     * {@code DELETE  /queries/:queryId} : cancel a running query.
+     *
+     * @param queryId the id of the query to cancel.
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)},
+     * or with status {@code 404 (Not Found)} if no query with this id is running.
+     */
+    @DeleteMapping("/queries/{queryId}")
+    public ResponseEntity<Void> cancelQuery(@PathVariable String queryId) {
+        log.debug("REST request to cancel analytics query : {}", queryId);
+        if (!recordAnalyticsService.cancel(queryId)) {
+            throw new ProcessException("No running query with id " + queryId, HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    private static RecordAnalyticsQuery recordQuery(LocalDate from, LocalDate to, GroupBy groupBy, Long userId,
+                                                    Integer heartRateMin, Integer heartRateMax,
+                                                    Double sugarLevelMin, Double sugarLevelMax) {
+        RecordAnalyticsQuery.RecordAnalyticsQueryBuilder query = RecordAnalyticsQuery.builder()
+                .fromDay((int) from.toEpochDay())
+                .toDay((int) to.toEpochDay())
+                .groupBy(groupBy)
+                .userId(userId);
+        if (heartRateMin != null) {
+            query.heartRateMin(heartRateMin);
+        }
+        if (heartRateMax != null) {
+            query.heartRateMax(heartRateMax);
+        }
+        if (sugarLevelMin != null) {
+            query.sugarLevelTenthsMin((int) Math.round(sugarLevelMin * 10));
+        }
+        if (sugarLevelMax != null) {
+            query.sugarLevelTenthsMax((int) Math.round(sugarLevelMax * 10));
+        }
+        return query.build();
+    }
+
+    private static int genders(List<String> values) {
+        int genders = 0;
+        if (values == null) {
+            return genders;
+        }
+        for (String value : values) {
+            if ("unknown".equalsIgnoreCase(value)) {
+                genders |= 1;
+                continue;
+            }
+            try {
+                genders |= 1 << (Gender.valueOf(value.toUpperCase()).ordinal() + 1);
+            } catch (IllegalArgumentException e) {
+                throw new ProcessException("Invalid gender: " + value, HttpStatus.BAD_REQUEST);
+            }
+        }
+        return genders;
+    }
+
+    private static String queryId(String queryId) {
+        if (queryId == null) {
+            return UUID.randomUUID().toString();
+        }
+        if (queryId.isBlank() || queryId.length() > 64) {
+            throw new ProcessException("Query id should have 1 to 64 characters", HttpStatus.BAD_REQUEST);
+        }
+        return queryId;
+    }
+
+    private static GroupBy groupBy(String value, LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new ProcessException("Invalid range for analytics", HttpStatus.BAD_REQUEST);
+        }
+        GroupBy groupBy;
+        try {
+            groupBy = GroupBy.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ProcessException("Invalid grouping: " + value, HttpStatus.BAD_REQUEST);
+        }
+        long days = ChronoUnit.DAYS.between(from, to) + 1;
+        if (groupBy == GroupBy.DAY && days > MAX_DAY_GROUPS) {
+            throw new ProcessException("Grouping by day covers at most " + MAX_DAY_GROUPS + " days", HttpStatus.BAD_REQUEST);
+        }
+        if (groupBy == GroupBy.MONTH && days > MAX_MONTH_RANGE_DAYS) {
+            throw new ProcessException("Grouping by month covers at most " + MAX_MONTH_RANGE_DAYS + " days", HttpStatus.BAD_REQUEST);
+        }
+        return groupBy;
+    }
+}
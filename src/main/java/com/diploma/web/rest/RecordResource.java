@@ -2,10 +2,26 @@ package com.diploma.web.rest;
 
 import com.diploma.domain.Record;
 import com.diploma.domain.User;
+import com.diploma.domain.enumeration.RollupBucket;
+import com.diploma.service.RecordAnalyticsService;
+import com.diploma.service.RecordAnomalyService;
+import com.diploma.service.RecordExportService;
+import com.diploma.service.RecordFileFormat;
+import com.diploma.service.RecordImportService;
+import com.diploma.service.RecordIngestionService;
+import com.diploma.service.RecordRollupService;
 import com.diploma.service.RecordService;
 import com.diploma.service.RecordsParams;
 import com.diploma.service.SearchParameters;
 import com.diploma.service.UserService;
+import com.diploma.config.ApplicationProperties;
+import com.diploma.service.dto.RecordAlertDTO;
+import com.diploma.service.dto.RecordBatchResultDTO;
+import com.diploma.service.dto.RecordImportReportDTO;
+import com.diploma.service.dto.RecordPercentilesDTO;
+import com.diploma.service.dto.RecordStatsDTO;
+import com.diploma.service.dto.RecordVersionDTO;
+import com.diploma.service.dto.RecordsCursorPageDTO;
 import com.diploma.service.dto.RecordsParamsDTO;
 import com.diploma.service.dto.SearchParametersDTO;
 import com.diploma.web.rest.errors.ProcessException;
@@ -14,19 +30,31 @@ import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.Principal;
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * REST controller for managing {@link Record}.
@@ -39,41 +67,111 @@ public class RecordResource {
     private static final String ENTITY_NAME = "record";
 //    private final Authentication authentication;
     private final RecordService recordService;
+    private final RecordRollupService recordRollupService;
+    private final RecordAnomalyService recordAnomalyService;
+    private final RecordAnalyticsService recordAnalyticsService;
+    private final RecordExportService recordExportService;
+    private final RecordImportService recordImportService;
+    private final RecordIngestionService recordIngestionService;
     private final UserService userService;
+    private final ApplicationProperties applicationProperties;
 
     /**
      * {@code POST  /} : Create a new record.
+     * <p>
+     * In the write-behind ingestion mode the record is only logged, and stored later.
      *
      * @param record the record to create.
-     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new resultDTO, or with status {@code 400 (Bad Request)} if the record has already an ID.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new resultDTO,
+     * or with status {@code 202 (Accepted)} and no body in the write-behind ingestion mode,
+     * or with status {@code 400 (Bad Request)} if the record has already an ID.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
+     * @throws IOException        if the record cannot be logged.
      */
     @PostMapping
-    public ResponseEntity<Record> createRecord(@Valid @RequestBody Record record) throws URISyntaxException {
+    public ResponseEntity<Record> createRecord(@Valid @RequestBody Record record) throws URISyntaxException, IOException {
         log.debug("REST request to save Record : {}", record);
-        User currentUser = userService.getCurrentUser().get();
         if (record.getId() != null) {
             throw new ProcessException("A new record cannot already have an ID", HttpStatus.BAD_REQUEST);
         }
+        record.setUserId(userService.getCurrentUserId());
+        if (recordIngestionService.isWriteBehind()) {
+            recordIngestionService.ingest(record);
+            return ResponseEntity.accepted().build();
+        }
         Record result = recordService.create(record);
-        currentUser.getRecords().add(result);
         return ResponseEntity
                 .created(new URI("/api/records/" + result.getId()))
                 .headers(HeaderUtil.createEntityCreationAlert(ENTITY_NAME, result.getId().toString()))
                 .body(result);
     }
 
+    /**
+     * {@code POST  /batch} : Create a batch of new records for the current user.
+     *
+     * @param records the records to create.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the per-item results,
+     * or with status {@code 400 (Bad Request)} if the batch is empty or too large.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<RecordBatchResultDTO> createRecords(@RequestBody List<Record> records) {
+        log.debug("REST request to save batch of {} Records", records.size());
+        if (records.isEmpty()) {
+            throw new ProcessException("A batch should contain at least one " + ENTITY_NAME, HttpStatus.BAD_REQUEST);
+        }
+        int maxSize = applicationProperties.getRecords().getBatchMaxSize();
+        if (records.size() > maxSize) {
+            throw new ProcessException("A batch should not contain more than " + maxSize + " records", HttpStatus.BAD_REQUEST);
+        }
+        RecordBatchResultDTO result = recordService.createBatch(records, userService.getCurrentUserId());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * {@code POST  /import} : Import records for the current user from a CSV or NDJSON upload.
+     * <p>
+     * The format is taken from the {@code Content-Type} header; a body sent with {@code Content-Encoding: gzip}
+     * is decompressed on the fly.
+     *
+     * @param request the request carrying the upload.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the import report,
+     * or with status {@code 400 (Bad Request)} if the CSV header is not valid.
+     * @throws IOException if the upload cannot be read.
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<RecordImportReportDTO> importRecords(HttpServletRequest request) throws IOException {
+        log.debug("REST request to import Records : {}", request.getContentType());
+        RecordFileFormat format = MediaType.parseMediaType(request.getContentType()).isCompatibleWith(MediaType.parseMediaType("text/csv"))
+                ? RecordFileFormat.CSV
+                : RecordFileFormat.NDJSON;
+        Long userId = userService.getCurrentUserId();
+        InputStream in = request.getInputStream();
+        if ("gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING))) {
+            in = new GZIPInputStream(in, 64 * 1024);
+        }
+        RecordImportReportDTO report = recordImportService.importRecords(userId, in, format);
+        return ResponseEntity.ok(report);
+    }
+
     /**
      * {@code PUT  /:id} : Updates an existing record.
      *
-     * @param id the id of the resultDTO to save.
-     * @param record the recordDTO to update.
+     * The version the client has read is taken from {@code If-Match} when present, otherwise from the body, and the
+     * update is applied only if the record still has it.
+     *
+     * @param id      the id of the resultDTO to save.
+     * @param ifMatch the {@code ETag} of the record the client has read, optional.
+     * @param record  the recordDTO to update.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated recordDTO,
      * or with status {@code 400 (Bad Request)} if the recordDTO is not valid,
-     * or with status {@code 500 (Internal Server Error)} if the recordDTO couldn't be updated.
+     * or with status {@code 404 (Not Found)} if the record does not exist,
+     * or with status {@code 409 (Conflict)} if the record was modified since the client read it,
+     * or with status {@code 428 (Precondition Required)} if no version is sent.
      */
     @PutMapping("/{id}")
-    public ResponseEntity<Record> updateUser(@PathVariable(value = "id", required = false) final Long id, @Valid @RequestBody Record record) {
+    public ResponseEntity<Record> updateUser(@PathVariable(value = "id", required = false) final Long id,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                             @Valid @RequestBody Record record) {
         log.debug("REST request to update Record : {}, {}", id, record);
         if (record.getId() == null) {
             throw new ProcessException("Null id for " + ENTITY_NAME, HttpStatus.BAD_REQUEST);
@@ -81,12 +179,11 @@ public class RecordResource {
         if (!Objects.equals(id, record.getId())) {
             throw new ProcessException("Invalid id for" + ENTITY_NAME, HttpStatus.BAD_REQUEST);
         }
-        if (!recordService.existsById(id)) {
-            throw new ProcessException("Entity not found" + ENTITY_NAME, HttpStatus.BAD_REQUEST);
-        }
-        Record result = recordService.update(record);
+        Long version = HeaderUtil.expectedVersion(id, ifMatch, record.getVersion());
+        Record result = recordService.update(record, version);
         return ResponseEntity
                 .ok()
+                .eTag(HeaderUtil.createETag(result.getId(), result.getVersion()))
                 .headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, record.getId().toString()))
                 .body(result);
     }
@@ -94,8 +191,10 @@ public class RecordResource {
     /**
      * {@code GET  /} : get all the records.
      *
-     * @param recordsParamsDTO the pagination information.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of records in body.
+     * @param recordsParamsDTO the pagination information and the optional {@code from}/{@code to} creation days,
+     *                         defaulting to the last {@code listing-default-months} months.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of records in body,
+     * or with status {@code 400 (Bad Request)} if the range is not valid.
      */
     @GetMapping
     public ResponseEntity<Page<Record>> getAllRecords(@RequestBody RecordsParamsDTO recordsParamsDTO) {
@@ -107,17 +206,157 @@ public class RecordResource {
         return ResponseEntity.ok(page);
     }
 
+    /**
+     * {@code GET  /cursor} : get a page of the current user's records using keyset pagination.
+     *
+     * @param cursor the {@code nextCursor} of the previous page, absent for the first page.
+     * @param limit  the page size.
+     * @param from   the first creation day to list, optional; defaults to {@code listing-default-months} months
+     *               before {@code to}.
+     * @param to     the last creation day to list, optional; defaults to today.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the page of records in body,
+     * or with status {@code 400 (Bad Request)} if the cursor, the limit or the range is not valid.
+     */
+    @GetMapping("/cursor")
+    public ResponseEntity<RecordsCursorPageDTO> getRecordsAfter(@RequestParam(required = false) String cursor,
+                                                                @RequestParam(defaultValue = "20") Integer limit,
+                                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        log.debug("REST request to get Records after cursor : {}", cursor);
+        if (limit < 3 || limit > 200) {
+            throw new ProcessException("Limit should be between 3 and 200", HttpStatus.BAD_REQUEST);
+        }
+        return ResponseEntity.ok(recordService.getRecordsAfter(cursor, limit, from, to));
+    }
+
+    /**
+     * {@code GET  /stats} : get pre-aggregated statistics of the current user's records.
+     *
+     * @param bucket the bucket granularity: {@code day}, {@code week} or {@code month}.
+     * @param from   the first day of the range.
+     * @param to     the last day of the range.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and one entry per non-empty bucket in body,
+     * or with status {@code 400 (Bad Request)} if the parameters are not valid.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<List<RecordStatsDTO>> getStats(@RequestParam(defaultValue = "day") String bucket,
+                                                         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        log.debug("REST request to get Record stats by {} from {} to {}", bucket, from, to);
+        if (from.isAfter(to)) {
+            throw new ProcessException("Invalid range for " + ENTITY_NAME + " stats", HttpStatus.BAD_REQUEST);
+        }
+        RollupBucket rollupBucket;
+        try {
+            rollupBucket = RollupBucket.valueOf(bucket.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ProcessException("Invalid bucket: " + bucket, HttpStatus.BAD_REQUEST);
+        }
+        return ResponseEntity.ok(recordRollupService.getStats(userService.getCurrentUserId(), rollupBucket, from, to));
+    }
+
+    /**
+     * {@code GET  /percentiles} : get heart rate and sugar level percentiles of the current user's records.
+     *
+     * @param from      the first day of the range, widened to the start of its sketch bucket.
+     * @param to        the last day of the range, widened to the end of its sketch bucket.
+     * @param quantiles the quantiles, between {@code 0} and {@code 1}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the percentiles in body,
+     * or with status {@code 400 (Bad Request)} if the parameters are not valid,
+     * or with status {@code 503 (Service Unavailable)} while the analytics store is loading.
+     */
+    @GetMapping("/percentiles")
+    public ResponseEntity<RecordPercentilesDTO> getPercentiles(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                               @RequestParam(defaultValue = "0.5,0.9,0.95,0.99") List<Double> quantiles) {
+        log.debug("REST request to get Record percentiles {} from {} to {}", quantiles, from, to);
+        return ResponseEntity.ok(recordAnalyticsService.percentiles(List.of(userService.getCurrentUserId()), from, to, quantiles));
+    }
+
+    /**
+     * {@code GET  /alerts} : get the latest abnormal readings of the current user.
+     *
+     * @param limit the maximum number of alerts.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the alerts, newest first, in body,
+     * or with status {@code 400 (Bad Request)} if the limit is not valid.
+     */
+    @GetMapping("/alerts")
+    public ResponseEntity<List<RecordAlertDTO>> getAlerts(@RequestParam(defaultValue = "50") Integer limit) {
+        log.debug("REST request to get Record alerts");
+        if (limit < 1 || limit > 1000) {
+            throw new ProcessException("Limit should be between 1 and 1000", HttpStatus.BAD_REQUEST);
+        }
+        return ResponseEntity.ok(recordAnomalyService.getAlerts(userService.getCurrentUserId(), limit));
+    }
+
+    /**
+     * {@code GET  /export} : stream the current user's record history.
+     *
+     * @param format the output format: {@code ndjson} or {@code csv}.
+     * @param gzip   whether to gzip the response body.
+     * @param from   the first creation day to export, optional.
+     * @param to     the last creation day to export, optional.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the records streamed in body,
+     * or with status {@code 400 (Bad Request)} if the format is not supported.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportRecords(@RequestParam(defaultValue = "ndjson") String format,
+                                                               @RequestParam(defaultValue = "false") boolean gzip,
+                                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        log.debug("REST request to export Records as {}", format);
+        RecordFileFormat exportFormat;
+        try {
+            exportFormat = RecordFileFormat.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ProcessException("Invalid export format: " + format, HttpStatus.BAD_REQUEST);
+        }
+        Long userId = userService.getCurrentUserId();
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream gzipOut = new GZIPOutputStream(out, 64 * 1024);
+                recordExportService.export(userId, from, to, exportFormat, gzipOut);
+                gzipOut.finish();
+            } else {
+                recordExportService.export(userId, from, to, exportFormat, out);
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"records." + exportFormat.getExtension() + "\"");
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
     /**
      * {@code GET  /:id} : get the "id" record.
      *
-     * @param id the id of the recordDTO to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the recordDTO, or with status {@code 404 (Not Found)}.
+     * The response carries an {@code ETag} built from the id and the version of the record. A request whose
+     * {@code If-None-Match} still matches is answered {@code 304 (Not Modified)} from a version-only lookup, without
+     * loading the record. No {@code Last-Modified} is sent: the update day is client-set and too coarse to validate.
+     *
+     * @param id         the id of the recordDTO to retrieve.
+     * @param webRequest the current request, to evaluate its conditional headers.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the recordDTO, with status {@code 304 (Not Modified)},
+     * or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Record> getRecord(@PathVariable Long id) {
+    public ResponseEntity<Record> getRecord(@PathVariable Long id, WebRequest webRequest) {
         log.debug("REST request to get Record : {}", id);
+        Optional<RecordVersionDTO> version = recordService.getVersion(id);
+        if (version.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (webRequest.checkNotModified(HeaderUtil.createETag(id, version.get().getVersion()))) {
+            return null;
+        }
         Optional<Record> record = recordService.getById(id);
-        return record.map(item -> ResponseEntity.ok().body(item)).orElseGet(() -> ResponseEntity.notFound().build());
+        return record.map(item -> ResponseEntity.ok()
+                        .eTag(HeaderUtil.createETag(item.getId(), item.getVersion()))
+                        .body(item))
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     /**
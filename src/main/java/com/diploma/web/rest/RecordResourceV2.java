@@ -0,0 +1,105 @@
+package com.diploma.web.rest;
+
+import com.diploma.domain.Record;
+import com.diploma.domain.enumeration.RollupBucket;
+import com.diploma.service.ReactiveRecordService;
+import com.diploma.service.UserService;
+import com.diploma.service.dto.RecordStatsDTO;
+import com.diploma.service.dto.RecordsCursorPageDTO;
+import com.diploma.web.rest.errors.ProcessException;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+/**
+ * Non-blocking REST controller for reading the current user's {@link Record}s.
+ * <p>
+ * Handlers return {@link Mono}/{@link Flux} backed by R2DBC: the servlet request is put in asynchronous mode and
+ * the request thread is released while the query runs. Writes stay on {@link RecordResource}.
+ */
+@RestController
+@RequestMapping(value = "/api/v2/records")
+@RequiredArgsConstructor
+public class RecordResourceV2 {
+
+    private final Logger log = LoggerFactory.getLogger(RecordResourceV2.class);
+    private static final String ENTITY_NAME = "record";
+    private final ReactiveRecordService reactiveRecordService;
+    private final UserService userService;
+
+    /**
+     * {@code GET  /} : get a page of the current user's records using keyset pagination.
+     *
+     * @param cursor the {@code nextCursor} of the previous page, absent for the first page.
+     * @param limit  the page size.
+     * @param from   the first creation day to list, optional; defaults to {@code listing-default-months} months
+     *               before {@code to}.
+     * @param to     the last creation day to list, optional; defaults to today.
+     * @return the {@link Mono} of the page of records, with status {@code 200 (OK)},
+     * or with status {@code 400 (Bad Request)} if the cursor, the limit or the range is not valid.
+     */
+    @GetMapping
+    public Mono<RecordsCursorPageDTO> getRecords(@RequestParam(required = false) String cursor,
+                                                 @RequestParam(defaultValue = "20") Integer limit,
+                                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        log.debug("REST request to get Records after cursor : {}", cursor);
+        if (limit < 3 || limit > 200) {
+            throw new ProcessException("Limit should be between 3 and 200", HttpStatus.BAD_REQUEST);
+        }
+        return reactiveRecordService.getRecordsAfter(userService.getCurrentUserId(), cursor, limit, from, to);
+    }
+
+    /**
+     * {@code GET  /stats} : get pre-aggregated statistics of the current user's records.
+     *
+     * @param bucket the bucket granularity: {@code day}, {@code week} or {@code month}.
+     * @param from   the first day of the range.
+     * @param to     the last day of the range.
+     * @return the {@link Flux} of one entry per non-empty bucket, with status {@code 200 (OK)},
+     * or with status {@code 400 (Bad Request)} if the parameters are not valid.
+     */
+    @GetMapping("/stats")
+    public Flux<RecordStatsDTO> getStats(@RequestParam(defaultValue = "day") String bucket,
+                                         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        log.debug("REST request to get Record stats by {} from {} to {}", bucket, from, to);
+        if (from.isAfter(to)) {
+            throw new ProcessException("Invalid range for " + ENTITY_NAME + " stats", HttpStatus.BAD_REQUEST);
+        }
+        RollupBucket rollupBucket;
+        try {
+            rollupBucket = RollupBucket.valueOf(bucket.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ProcessException("Invalid bucket: " + bucket, HttpStatus.BAD_REQUEST);
+        }
+        return reactiveRecordService.getStats(userService.getCurrentUserId(), rollupBucket, from, to);
+    }
+
+    /**
+     * {@code GET  /:id} : get the "id" record of the current user.
+     *
+     * @param id the id of the record to retrieve.
+     * @return the {@link Mono} of the {@link ResponseEntity} with status {@code 200 (OK)} and with body the record,
+     * or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Record>> getRecord(@PathVariable Long id) {
+        log.debug("REST request to get Record : {}", id);
+        return reactiveRecordService.getById(userService.getCurrentUserId(), id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+}
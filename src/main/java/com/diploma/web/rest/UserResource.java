@@ -1,13 +1,13 @@
 package com.diploma.web.rest;
 
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.JWTVerifier;
-import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.diploma.domain.User;
+import com.diploma.domain.UserPurgeJob;
+import com.diploma.security.jwt.TokenProvider;
 import com.diploma.service.SearchParameters;
 import com.diploma.service.UserService;
 import com.diploma.service.dto.SearchParametersDTO;
+import com.diploma.service.dto.UserDTO;
 import com.diploma.web.rest.errors.ProcessException;
 import com.diploma.web.rest.util.HeaderUtil;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -15,9 +15,11 @@ import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -42,7 +44,10 @@ public class UserResource {
 
     private final Logger log = LoggerFactory.getLogger(UserResource.class);
     private static final String ENTITY_NAME = "account";
+    private static final String INCLUDE_RECORDS = "records";
+    private static final int MAX_RECORDS_LIMIT = 100;
     private final UserService userService;
+    private final TokenProvider tokenProvider;
 
     /**
      * {@code POST  /} : Create a new user.
@@ -67,14 +72,22 @@ public class UserResource {
     /**
      * {@code PUT  /:id} : Updates an existing user.
      *
-     * @param id   the id of the userDTO to save.
-     * @param user the userDTO to update.
+     * The version the client has read is taken from {@code If-Match} when present, otherwise from the body, and the
+     * update is applied only if the user still has it.
+     *
+     * @param id      the id of the userDTO to save.
+     * @param ifMatch the {@code ETag} of the user the client has read, optional.
+     * @param user    the userDTO to update.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated userDTO,
      * or with status {@code 400 (Bad Request)} if the userDTO is not valid,
-     * or with status {@code 500 (Internal Server Error)} if the userDTO couldn't be updated.
+     * or with status {@code 404 (Not Found)} if the user does not exist,
+     * or with status {@code 409 (Conflict)} if the user was modified since the client read it,
+     * or with status {@code 428 (Precondition Required)} if no version is sent.
      */
     @PutMapping("/{id}")
-    public ResponseEntity<User> updateUser(@PathVariable(value = "id", required = false) final Long id, @Valid @RequestBody User user) {
+    public ResponseEntity<User> updateUser(@PathVariable(value = "id", required = false) final Long id,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                           @Valid @RequestBody User user) {
         log.debug("REST request to update User : {}, {}", id, user);
         if (user.getId() == null) {
             throw new ProcessException("Null id for " + ENTITY_NAME, HttpStatus.BAD_REQUEST);
@@ -82,12 +95,11 @@ public class UserResource {
         if (!Objects.equals(id, user.getId())) {
             throw new ProcessException("Invalid id for" + ENTITY_NAME, HttpStatus.BAD_REQUEST);
         }
-        if (!userService.existsById(id)) {
-            throw new ProcessException("Entity not found" + ENTITY_NAME, HttpStatus.BAD_REQUEST);
-        }
-        User result = userService.update(user);
+        Long version = HeaderUtil.expectedVersion(id, ifMatch, user.getVersion());
+        User result = userService.update(user, version);
         return ResponseEntity
                 .ok()
+                .eTag(HeaderUtil.createETag(result.getId(), result.getVersion()))
                 .headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, user.getId().toString()))
                 .body(result);
     }
@@ -96,70 +108,121 @@ public class UserResource {
      * {@code GET  /} : get all the users.
      *
      * @param searchParametersDTO the pagination information.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of users in body.
+     * @param include             {@code records} to attach the latest records of each user, optional.
+     * @param recordsLimit        the number of records attached to each user when they are included.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of users in body,
+     * or with status {@code 400 (Bad Request)} if the include or the records limit is not valid.
      */
     @GetMapping
-    public ResponseEntity<Page<User>> getAllUsers(@RequestBody SearchParametersDTO searchParametersDTO) {
+    public ResponseEntity<Page<UserDTO>> getAllUsers(@RequestBody SearchParametersDTO searchParametersDTO,
+                                                     @RequestParam(required = false) Set<String> include,
+                                                     @RequestParam(defaultValue = "10") Integer recordsLimit) {
         log.debug("REST request to get Accounts");
         SearchParameters searchParameters = searchParametersDTO.convertSearchParamsRequestToSearchParams();
-        Page<User> page = userService.getAllUsers(searchParameters);
+        Page<UserDTO> page = userService.getAllUsers(searchParameters, includedRecordsLimit(include, recordsLimit));
         return ResponseEntity.ok(page);
     }
 
     /**
      * {@code GET  /:id} : get the "id" user.
      *
-     * @param id the id of the userDTO to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the userDTO, or with status {@code 404 (Not Found)}.
+     * Without included records, the response carries an {@code ETag} built from the id and the version of the user, and a
+     * request whose {@code If-None-Match} still matches is answered {@code 304 (Not Modified)} from a version-only lookup.
+     * Included records change independently of the user, so that representation is not tagged.
+     *
+     * @param id           the id of the userDTO to retrieve.
+     * @param include      {@code records} to attach the latest records of the user, optional.
+     * @param recordsLimit the number of records attached when they are included.
+     * @param webRequest   the current request, to evaluate its conditional headers.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the userDTO, with status {@code 304 (Not Modified)},
+     * or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<User> getUser(@PathVariable Long id) {
+    public ResponseEntity<UserDTO> getUser(@PathVariable Long id,
+                                           @RequestParam(required = false) Set<String> include,
+                                           @RequestParam(defaultValue = "10") Integer recordsLimit,
+                                           WebRequest webRequest) {
         log.debug("REST request to get User : {}", id);
-        Optional<User> user = userService.getById(id);
-        return user.map(item -> ResponseEntity.ok().body(item)).orElseGet(() -> ResponseEntity.notFound().build());
+        Integer includedLimit = includedRecordsLimit(include, recordsLimit);
+        if (includedLimit != null) {
+            Optional<UserDTO> user = userService.getById(id, includedLimit);
+            return user.map(item -> ResponseEntity.ok().body(item)).orElseGet(() -> ResponseEntity.notFound().build());
+        }
+        Optional<Long> version = userService.getVersion(id);
+        if (version.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        String eTag = HeaderUtil.createETag(id, version.get());
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        Optional<UserDTO> user = userService.getById(id, null);
+        return user.map(item -> ResponseEntity.ok().eTag(eTag).body(item)).orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     /**
      * {@code DELETE  /users/:id} : delete the "id" user.
+     * <p>
+     * The user is hidden at once and its records are purged in the background; the progress is available at the
+     * {@code Location} of the response.
      *
      * @param id the id of the userDTO to delete.
-     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}.
+     * @return the {@link ResponseEntity} with status {@code 202 (Accepted)}, or with status {@code 404 (Not Found)}.
+     * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
+    public ResponseEntity<Void> deleteUser(@PathVariable Long id) throws URISyntaxException {
         log.debug("REST request to delete User : {}", id);
         userService.delete(id);
         return ResponseEntity
-                .noContent()
+                .accepted()
+                .location(new URI("/api/users/" + id + "/purge"))
                 .headers(HeaderUtil.createEntityDeletionAlert(ENTITY_NAME, id.toString()))
                 .build();
     }
 
+    /**
+     * {@code GET  /users/:id/purge} : get the purge progress of the deleted "id" user.
+     *
+     * @param id the id of the deleted user.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the purge job, or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/{id}/purge")
+    public ResponseEntity<UserPurgeJob> getPurge(@PathVariable Long id) {
+        log.debug("REST request to get the purge of User : {}", id);
+        Optional<UserPurgeJob> job = userService.getPurge(id);
+        return job.map(item -> ResponseEntity.ok().body(item)).orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * @return the number of records to attach to each user, or {@code null} if records are not included.
+     */
+    private static Integer includedRecordsLimit(Set<String> include, Integer recordsLimit) {
+        if (include == null || include.isEmpty()) {
+            return null;
+        }
+        if (!include.equals(Set.of(INCLUDE_RECORDS))) {
+            throw new ProcessException("Only " + INCLUDE_RECORDS + " can be included", HttpStatus.BAD_REQUEST);
+        }
+        if (recordsLimit < 1 || recordsLimit > MAX_RECORDS_LIMIT) {
+            throw new ProcessException("Records limit should be between 1 and " + MAX_RECORDS_LIMIT, HttpStatus.BAD_REQUEST);
+        }
+        return recordsLimit;
+    }
+
     @GetMapping("/token/refresh")
     public void refreshToken(HttpServletRequest request, HttpServletResponse response) throws IOException {
         String authorizationHeader = request.getHeader(AUTHORIZATION);
         if (authorizationHeader != null && authorizationHeader.startsWith(TOKEN_PREFIX)) {
             try {
                 String refresh_token = authorizationHeader.substring(TOKEN_PREFIX.length());
-                Algorithm algorithm = Algorithm.HMAC256("secret".getBytes());
-                JWTVerifier verifier = JWT.require(algorithm).build();
-                DecodedJWT decodedJWT = verifier.verify(refresh_token);
+                DecodedJWT decodedJWT = tokenProvider.decode(refresh_token);
                 String username = decodedJWT.getSubject();
                 User user = userService.getUserByEmail(username).orElseThrow(() -> new RuntimeException("No user with such email: " + username));
 
 
-                String accessToken = JWT.create()
-                        .withSubject(user.getEmail())
-                        .withExpiresAt(new Date(System.currentTimeMillis() + 10 * 60 * 1000))
-                        .withIssuer(request.getRequestURI())
-                        .withClaim("role", user.getRole())
-                        .sign(algorithm);
-                String refreshToken = JWT.create()
-                        .withSubject(user.getEmail())
-                        .withExpiresAt(new Date(System.currentTimeMillis() + 30 * 60 * 1000))
-                        .withIssuer(request.getRequestURI())
-                        .withClaim("role", user.getRole())
-                        .sign(algorithm);
+                String accessToken = tokenProvider.createToken(user.getEmail(), user.getId(), user.getRole(), request.getRequestURI(), 10 * 60 * 1000);
+                String refreshToken = tokenProvider.createToken(user.getEmail(), user.getId(), user.getRole(), request.getRequestURI(), 30 * 60 * 1000);
                 Map<String, String> tokens = new HashMap<>();
                 tokens.put("access_token", accessToken);
                 tokens.put("refresh_token", refreshToken);
@@ -1,6 +1,8 @@
 package com.diploma.web.rest.util;
 
+import com.diploma.web.rest.errors.ProcessException;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 
 public class HeaderUtil {
 
@@ -24,4 +26,40 @@ public class HeaderUtil {
         headers.add("Info-param", param);
         return headers;
     }
+
+    /**
+     * @return the strong entity tag of the given version of an entity, e.g. {@code "42-3"}.
+     */
+    public static String createETag(Long id, Long version) {
+        return "\"" + id + "-" + version + "\"";
+    }
+
+    /**
+     * Resolve the version a client has read, from its {@code If-Match} header when present, otherwise from the body.
+     *
+     * @param id          the id of the entity being updated.
+     * @param ifMatch     the {@code If-Match} header, optional.
+     * @param bodyVersion the version sent in the body, optional.
+     * @return the expected version.
+     * @throws ProcessException {@code 412} if the header is not a tag of this entity, {@code 428} if no version is sent.
+     */
+    public static Long expectedVersion(Long id, String ifMatch, Long bodyVersion) {
+        if (ifMatch == null) {
+            if (bodyVersion == null) {
+                throw new ProcessException("A version is required, in the If-Match header or in the body",
+                        HttpStatus.PRECONDITION_REQUIRED);
+            }
+            return bodyVersion;
+        }
+        String prefix = "\"" + id + "-";
+        String eTag = ifMatch.trim();
+        if (!eTag.startsWith(prefix) || !eTag.endsWith("\"") || eTag.length() <= prefix.length() + 1) {
+            throw new ProcessException("If-Match is not a tag of this entity", HttpStatus.PRECONDITION_FAILED);
+        }
+        try {
+            return Long.parseLong(eTag.substring(prefix.length(), eTag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new ProcessException("If-Match is not a tag of this entity", HttpStatus.PRECONDITION_FAILED);
+        }
+    }
 }
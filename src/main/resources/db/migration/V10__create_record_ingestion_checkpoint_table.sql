@@ -0,0 +1,8 @@
+-- Position of each write-ahead log of the write-behind ingestion mode up to which records are stored, moved in the
+-- same transaction as the records so that a replayed batch is recognized and skipped.
+CREATE TABLE record_ingestion_checkpoint (
+    log_id VARCHAR(36) PRIMARY KEY,
+    segment BIGINT NOT NULL,
+    entry INT NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
@@ -0,0 +1,7 @@
+-- Each purge chunk starts after the last (date_created, id) deleted by the previous one, instead of walking
+-- again over the index entries of the rows already deleted.
+ALTER TABLE user_purge_job ADD COLUMN last_date_created DATE;
+ALTER TABLE user_purge_job ADD COLUMN last_record_id BIGINT;
+
+-- the deleted users are reloaded for as long as their access tokens may be valid
+CREATE INDEX user_purge_job_created_at_idx ON user_purge_job (created_at);
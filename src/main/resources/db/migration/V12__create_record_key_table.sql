@@ -0,0 +1,39 @@
+-- The creation day of every record by id. The primary key of record is (id, date_created), so a
+-- statement addressing a record by id alone probes every monthly partition; looking the day up here
+-- first lets it bound date_created and be pruned to one partition.
+-- Kept by triggers on record; an update moving a row to another partition fires the delete and
+-- insert triggers.
+
+CREATE TABLE record_key (
+    id BIGINT NOT NULL,
+    date_created DATE NOT NULL,
+    CONSTRAINT record_key_pkey
+        PRIMARY KEY (id)
+);
+
+INSERT INTO record_key (id, date_created)
+SELECT id, date_created
+FROM record;
+
+CREATE FUNCTION record_key_sync() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        DELETE FROM record_key WHERE id = OLD.id;
+    ELSE
+        INSERT INTO record_key (id, date_created) VALUES (NEW.id, NEW.date_created)
+        ON CONFLICT (id) DO UPDATE SET date_created = EXCLUDED.date_created;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER record_key_sync
+    AFTER INSERT OR DELETE ON record
+    FOR EACH ROW EXECUTE FUNCTION record_key_sync();
+
+CREATE TRIGGER record_key_sync_update
+    AFTER UPDATE OF date_created ON record
+    FOR EACH ROW WHEN (OLD.date_created IS DISTINCT FROM NEW.date_created)
+    EXECUTE FUNCTION record_key_sync();
+
+ANALYZE record_key;
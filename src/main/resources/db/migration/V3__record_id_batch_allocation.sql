@@ -0,0 +1,3 @@
+-- Hibernate allocates record ids in pooled blocks of 50 (see Record#id),
+-- so one nextval() call covers a whole JDBC insert batch.
+ALTER SEQUENCE record_id_seq INCREMENT BY 50;
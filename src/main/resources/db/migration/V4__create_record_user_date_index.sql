@@ -0,0 +1 @@
+CREATE INDEX record_user_id_date_created_id_idx ON record (user_id, date_created, id);
@@ -0,0 +1,28 @@
+CREATE TABLE record_rollup (
+    user_id BIGINT NOT NULL,
+    bucket VARCHAR(5) NOT NULL,
+    bucket_start DATE NOT NULL,
+    heart_rate_count BIGINT DEFAULT 0 NOT NULL,
+    heart_rate_sum BIGINT DEFAULT 0 NOT NULL,
+    heart_rate_min INT,
+    heart_rate_max INT,
+    sugar_level_count BIGINT DEFAULT 0 NOT NULL,
+    sugar_level_sum NUMERIC(18,1) DEFAULT 0 NOT NULL,
+    sugar_level_min NUMERIC(3,1),
+    sugar_level_max NUMERIC(3,1),
+    CONSTRAINT record_rollup_pk
+        PRIMARY KEY (user_id, bucket, bucket_start),
+    CONSTRAINT record_rollup_user_account_id_fk
+        FOREIGN KEY (user_id) REFERENCES user_account
+);
+
+INSERT INTO record_rollup
+SELECT r.user_id, b.bucket, b.bucket_start,
+       count(r.heart_rate), coalesce(sum(r.heart_rate), 0), min(r.heart_rate), max(r.heart_rate),
+       count(r.sugar_level), coalesce(sum(r.sugar_level), 0), min(r.sugar_level), max(r.sugar_level)
+FROM record r
+CROSS JOIN LATERAL (VALUES ('DAY', r.date_created),
+                           ('WEEK', date_trunc('week', r.date_created)::DATE),
+                           ('MONTH', date_trunc('month', r.date_created)::DATE)) AS b (bucket, bucket_start)
+WHERE r.user_id IS NOT NULL
+GROUP BY r.user_id, b.bucket, b.bucket_start;
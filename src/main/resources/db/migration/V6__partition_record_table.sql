@@ -0,0 +1,54 @@
+-- Turn record into a table range-partitioned by date_created, with one partition per month.
+-- Partitions for the coming months are created by RecordPartitionService; rows outside
+-- every monthly partition land in record_default.
+
+ALTER TABLE record RENAME TO record_unpartitioned;
+ALTER TABLE record_unpartitioned RENAME CONSTRAINT record_pkey TO record_unpartitioned_pkey;
+ALTER TABLE record_unpartitioned RENAME CONSTRAINT record_user_account_id_fk TO record_unpartitioned_user_account_id_fk;
+ALTER INDEX record_user_id_date_created_id_idx RENAME TO record_unpartitioned_user_id_date_created_id_idx;
+
+-- the partition key has to be part of the primary key
+CREATE TABLE record (
+    id BIGINT DEFAULT nextval('record_id_seq') NOT NULL,
+    user_id BIGINT,
+    heart_rate INT,
+    sugar_level NUMERIC(3,1),
+    date_created DATE DEFAULT CURRENT_DATE NOT NULL,
+    date_updated DATE DEFAULT CURRENT_DATE NOT NULL,
+    CONSTRAINT record_pkey
+        PRIMARY KEY (id, date_created),
+    CONSTRAINT record_user_account_id_fk
+        FOREIGN KEY (user_id) REFERENCES user_account
+) PARTITION BY RANGE (date_created);
+
+CREATE INDEX record_user_id_date_created_id_idx ON record (user_id, date_created, id);
+
+CREATE TABLE record_default PARTITION OF record DEFAULT;
+
+DO $$
+DECLARE
+    partition_start DATE;
+    last_start DATE;
+BEGIN
+    SELECT date_trunc('month', coalesce(min(date_created), CURRENT_DATE))::DATE,
+           (date_trunc('month', greatest(coalesce(max(date_created), CURRENT_DATE), CURRENT_DATE)) + INTERVAL '3 month')::DATE
+    INTO partition_start, last_start
+    FROM record_unpartitioned;
+    WHILE partition_start <= last_start LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF record FOR VALUES FROM (%L) TO (%L)',
+                       'record_' || to_char(partition_start, 'YYYY_MM'),
+                       partition_start,
+                       (partition_start + INTERVAL '1 month')::DATE);
+        partition_start := (partition_start + INTERVAL '1 month')::DATE;
+    END LOOP;
+END $$;
+
+INSERT INTO record (id, user_id, heart_rate, sugar_level, date_created, date_updated)
+SELECT id, user_id, heart_rate, sugar_level, date_created, date_updated
+FROM record_unpartitioned;
+
+-- keep the sequence alive when the old table goes away
+ALTER SEQUENCE record_id_seq OWNED BY record.id;
+DROP TABLE record_unpartitioned;
+
+ANALYZE record;
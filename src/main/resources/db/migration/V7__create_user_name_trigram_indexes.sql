@@ -0,0 +1,6 @@
+-- Trigram indexes serving the case-insensitive substring search of users:
+-- lower(name) LIKE '%keyword%' and similarity() ranking no longer scan user_account.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX user_account_name_trgm_idx ON user_account USING gin (lower(name) gin_trgm_ops);
+CREATE INDEX user_account_surname_trgm_idx ON user_account USING gin (lower(surname) gin_trgm_ops);
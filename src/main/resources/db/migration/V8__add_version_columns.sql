@@ -0,0 +1,3 @@
+-- Optimistic-locking versions, also used as strong ETags ("<id>-<version>") by the GET endpoints.
+ALTER TABLE user_account ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE record ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
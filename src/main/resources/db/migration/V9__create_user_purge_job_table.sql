@@ -0,0 +1,17 @@
+-- Users are deleted in two steps: the account is hidden at once by deleted_at, and its records are
+-- purged in chunks by a background worker whose progress is kept in user_purge_job.
+
+ALTER TABLE user_account ADD COLUMN deleted_at TIMESTAMP WITH TIME ZONE;
+
+-- no foreign key: the job outlives the account to report its completion
+CREATE TABLE user_purge_job (
+    user_id BIGINT PRIMARY KEY,
+    status VARCHAR(10) DEFAULT 'PENDING' NOT NULL,
+    records_total BIGINT,
+    records_deleted BIGINT DEFAULT 0 NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    completed_at TIMESTAMP WITH TIME ZONE
+);
+
+CREATE INDEX user_purge_job_status_created_at_idx ON user_purge_job (status, created_at);